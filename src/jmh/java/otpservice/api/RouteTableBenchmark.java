@@ -0,0 +1,101 @@
+package otpservice.api;
+
+import com.sun.net.httpserver.HttpHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость диспетчеризации в {@link RouteTable}: статический маршрут и маршрут с параметром
+ * {@code {id:long}}, попадание, 405 и 404. Параметр {@code extraRoutes} добавляет к маршрутам
+ * сервиса фиктивные: время поиска зависит от длины пути, а не от числа маршрутов.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteTableBenchmark {
+
+    @Param({"0", "1000"})
+    public int extraRoutes;
+
+    private RouteTable routes;
+    private StubHttpExchange staticHit;
+    private StubHttpExchange paramHit;
+    private StubHttpExchange staticMethodNotAllowed;
+    private StubHttpExchange paramMethodNotAllowed;
+    private StubHttpExchange notFound;
+
+    @Setup
+    public void setUp() {
+        routes = new RouteTable();
+        HttpHandler handler = exchange -> exchange.sendResponseHeaders(204, -1);
+        // те же шаблоны, что в RoutesDispatcher
+        routes.add(HttpMethod.POST, "/register", handler, List.of());
+        routes.add(HttpMethod.POST, "/login", handler, List.of());
+        routes.add(HttpMethod.POST, "/token/refresh", handler, List.of());
+        routes.add(HttpMethod.GET, "/operations", handler, List.of());
+        routes.add(HttpMethod.POST, "/operation/perform", handler, List.of());
+        routes.add(HttpMethod.PATCH, "/operation/confirm", handler, List.of());
+        routes.add(HttpMethod.PATCH, "/admin/config", handler, List.of());
+        routes.add(HttpMethod.GET, "/admin/users", handler, List.of());
+        routes.add(HttpMethod.DELETE, "/admin/users/{id:long}", handler, List.of());
+        routes.add(HttpMethod.POST, "/admin/operations", handler, List.of());
+        routes.add(HttpMethod.PATCH, "/admin/operations/{number:long}", handler, List.of());
+        routes.add(HttpMethod.GET, "/admin/limits", handler, List.of());
+        routes.add(HttpMethod.GET, "/admin/sessions", handler, List.of());
+        routes.add(HttpMethod.GET, "/admin/otp", handler, List.of());
+        for (int i = 0; i < extraRoutes; i++) {
+            routes.add(HttpMethod.GET, "/admin/extra" + i + "/{id:long}", handler, List.of());
+        }
+        staticHit = new StubHttpExchange("PATCH", "/operation/confirm");
+        paramHit = new StubHttpExchange("DELETE", "/admin/users/12345");
+        staticMethodNotAllowed = new StubHttpExchange("GET", "/operation/confirm");
+        paramMethodNotAllowed = new StubHttpExchange("GET", "/admin/users/12345");
+        notFound = new StubHttpExchange("GET", "/admin/unknown/12345");
+    }
+
+    private int dispatch(StubHttpExchange exchange) throws IOException {
+        routes.handle(exchange.reset());
+        return exchange.getResponseCode();
+    }
+
+    @Benchmark
+    public int staticHit() throws IOException {
+        return dispatch(staticHit);
+    }
+
+    @Benchmark
+    public int paramHit() throws IOException {
+        return dispatch(paramHit);
+    }
+
+    @Benchmark
+    public int staticMethodNotAllowed() throws IOException {
+        return dispatch(staticMethodNotAllowed);
+    }
+
+    @Benchmark
+    public int paramMethodNotAllowed() throws IOException {
+        return dispatch(paramMethodNotAllowed);
+    }
+
+    @Benchmark
+    public int notFound() throws IOException {
+        return dispatch(notFound);
+    }
+}
@@ -0,0 +1,127 @@
+package otpservice.dao.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import otpservice.dao.UserDao;
+import otpservice.model.User;
+import otpservice.model.UserRole;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Поиск пользователя по id через {@link CachingUserDao} и напрямую в «БД» с задержкой
+ * {@code dbMicros} на запрос, в 8 потоков. При {@code users=1000} все пользователи помещаются
+ * в кэш (почти одни попадания), при {@code users=50000} — в пять раз больше лимита
+ * {@code maxEntries}: видна цена промахов и вытеснения. Статистика кэша печатается в конце.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class CachingUserDaoBenchmark {
+    private static final int MAX_ENTRIES = 10_000;
+
+    @Param({"1000", "50000"})
+    public int users;
+
+    @Param({"200"})
+    public long dbMicros;
+
+    private UserDao database;
+    private CachingUserDao cache;
+
+    /** Имитация UserDaoImpl: фиксированная задержка на запрос */
+    private static final class SlowUserDao implements UserDao {
+        private final long delayNanos;
+
+        SlowUserDao(long delayNanos) {
+            this.delayNanos = delayNanos;
+        }
+
+        @Override
+        public User findById(Long id) {
+            LockSupport.parkNanos(delayNanos);
+            return new User(id, "user" + id, "5e884898da28047151d0e56f8dc6292773603d0d6aabbdd62a11ef721d1542d8",
+                    "user" + id + "@example.com", UserRole.USER);
+        }
+
+        @Override
+        public User findByUsername(String username) {
+            return findById(Long.parseLong(username.substring(4)));
+        }
+
+        @Override
+        public void create(User user) {
+            LockSupport.parkNanos(delayNanos);
+        }
+
+        @Override
+        public void save(User user) {
+            LockSupport.parkNanos(delayNanos);
+        }
+
+        @Override
+        public List<User> findAllUsersWithoutAdmins() {
+            return List.of();
+        }
+
+        @Override
+        public boolean adminExists() {
+            return true;
+        }
+
+        @Override
+        public void delete(Long userId) {
+            LockSupport.parkNanos(delayNanos);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new SlowUserDao(TimeUnit.MICROSECONDS.toNanos(dbMicros));
+        cache = new CachingUserDao(database, 60, MAX_ENTRIES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println();
+        System.out.println("users=" + users + " cache: " + cache.stats());
+    }
+
+    @Benchmark
+    public User database() {
+        return database.findById(nextId());
+    }
+
+    @Benchmark
+    public User cachedById() {
+        return cache.findById(nextId());
+    }
+
+    @Benchmark
+    public User cachedByUsername() {
+        return cache.findByUsername("user" + nextId());
+    }
+
+    private long nextId() {
+        return 1 + ThreadLocalRandom.current().nextInt(users);
+    }
+}
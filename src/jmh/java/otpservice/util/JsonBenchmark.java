@@ -0,0 +1,104 @@
+package otpservice.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import otpservice.model.User;
+import otpservice.model.UserRole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение прежнего пути JSON (один ObjectMapper, тело запроса через String) с текущим
+ * JsonUtil: разбор из InputStream, заранее построенные ObjectReader/ObjectWriter и Blackbird.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    /** Аналог AuthController.LoginRequest */
+    public static class LoginBody {
+        public String username;
+        public String password;
+    }
+
+    private static final ObjectMapper LEGACY_MAPPER = new ObjectMapper();
+    private static final ObjectReader LOGIN_READER = JsonUtil.readerFor(LoginBody.class);
+    private static final ObjectWriter USERS_WRITER = JsonUtil.listWriterFor(User.class);
+    private static final ObjectWriter BLACKBIRD_USERS_WRITER = new ObjectMapper()
+            .registerModule(new BlackbirdModule())
+            .writerFor(LEGACY_MAPPER.getTypeFactory().constructCollectionType(List.class, User.class));
+
+    private byte[] performBody;
+    private byte[] loginBody;
+    private List<User> users;
+
+    @Setup
+    public void setUp() {
+        performBody = "{\"operationNumber\":101,\"channel\":\"EMAIL\"}".getBytes(StandardCharsets.UTF_8);
+        loginBody = "{\"username\":\"user42\",\"password\":\"correct horse battery staple\"}"
+                .getBytes(StandardCharsets.UTF_8);
+        users = new ArrayList<>();
+        for (long i = 1; i <= 200; i++) {
+            users.add(new User(i, "user" + i, "5e884898da28047151d0e56f8dc6292773603d0d6aabbdd62a11ef721d1542d8",
+                    "user" + i + "@example.com", UserRole.USER));
+        }
+    }
+
+    @Benchmark
+    public JsonNode parseTreeViaString() throws IOException {
+        String body = new String(new ByteArrayInputStream(performBody).readAllBytes(), StandardCharsets.UTF_8);
+        return LEGACY_MAPPER.readTree(body);
+    }
+
+    @Benchmark
+    public JsonNode parseTreeFromStream() throws IOException {
+        return JsonUtil.getRequestBody(new ByteArrayInputStream(performBody));
+    }
+
+    @Benchmark
+    public LoginBody bindLoginMapper() throws IOException {
+        return LEGACY_MAPPER.readValue(new ByteArrayInputStream(loginBody), LoginBody.class);
+    }
+
+    @Benchmark
+    public LoginBody bindLoginReader() throws IOException {
+        return JsonUtil.fromJson(new ByteArrayInputStream(loginBody), LOGIN_READER);
+    }
+
+    @Benchmark
+    public byte[] writeUsersMapper() throws IOException {
+        return LEGACY_MAPPER.writeValueAsString(users).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeUsersWriter() throws IOException {
+        return JsonUtil.toJsonBytes(USERS_WRITER, users);
+    }
+
+    @Benchmark
+    public byte[] writeUsersBlackbird() throws IOException {
+        return BLACKBIRD_USERS_WRITER.writeValueAsBytes(users);
+    }
+}
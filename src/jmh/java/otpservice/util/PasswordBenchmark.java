@@ -0,0 +1,92 @@
+package otpservice.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хеширование и проверка пароля: прежний PasswordEncoder (новый MessageDigest на вызов,
+ * String.format на байт, сравнение строк) против текущего, а также проверка через
+ * {@link PasswordHashingExecutor} при 8 конкурирующих потоках — цена передачи задачи в пул.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordBenchmark {
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private String storedHash;
+    private PasswordHashingExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storedHash = PasswordEncoder.hash(PASSWORD);
+        executor = new PasswordHashingExecutor(Runtime.getRuntime().availableProcessors(), 1024, 10_000, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Benchmark
+    public String legacyHash() throws NoSuchAlgorithmException {
+        return legacyHash(PASSWORD);
+    }
+
+    @Benchmark
+    public String hash() {
+        return PasswordEncoder.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean legacyMatches() throws NoSuchAlgorithmException {
+        return legacyHash(PASSWORD).equalsIgnoreCase(storedHash);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return PasswordEncoder.matches(PASSWORD, storedHash);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean matchesInline8Threads() {
+        return PasswordEncoder.matches(PASSWORD, storedHash);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean matchesViaExecutor8Threads() {
+        return executor.matches(PASSWORD, storedHash);
+    }
+
+    /** Реализация до перехода на HexFormat и MessageDigest на поток */
+    private static String legacyHash(String rawPassword) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hashBytes = digest.digest(rawPassword.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(hashBytes.length * 2);
+        for (byte b : hashBytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
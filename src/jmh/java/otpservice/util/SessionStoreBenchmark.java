@@ -0,0 +1,122 @@
+package otpservice.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import otpservice.model.User;
+import otpservice.model.UserRole;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск сессии в {@link ExpiringTokenStore} (куча) и {@link OffHeapSessionStore}:
+ * по готовому токену, по заголовку Authorization без подстроки и по неизвестному токену.
+ * При подготовке печатается прирост занятой кучи после заполнения каждого хранилища.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SessionStoreBenchmark {
+    private static final long EXPIRES = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    @Param({"100000", "1000000"})
+    public int sessions;
+
+    private ExpiringTokenStore heap;
+    private OffHeapSessionStore offHeap;
+    private String[] tokens;
+    private String[] headers;
+    private String[] unknown;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] all = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            all[i] = UUID.randomUUID().toString();
+        }
+        long before = usedHeap();
+        heap = new ExpiringTokenStore(60_000, 10, sessions);
+        for (int i = 0; i < sessions; i++) {
+            heap.put(all[i], new User((long) i, "user" + i, null, null, UserRole.USER), EXPIRES);
+        }
+        long heapBytes = usedHeap() - before;
+
+        before = usedHeap();
+        offHeap = new OffHeapSessionStore(sessions * 2L);
+        for (int i = 0; i < sessions; i++) {
+            offHeap.put(all[i], new User((long) i, null, null, null, UserRole.USER), EXPIRES);
+        }
+        long offHeapHeapBytes = usedHeap() - before;
+        System.out.printf("%n%d sessions: heap store %d MB of heap; off-heap store %d MB of heap + %d MB native%n",
+                sessions, heapBytes >> 20, offHeapHeapBytes >> 20,
+                ((Number) offHeap.stats().get("offHeapBytes")).longValue() >> 20);
+
+        tokens = new String[LOOKUP_KEYS];
+        headers = new String[LOOKUP_KEYS];
+        unknown = new String[LOOKUP_KEYS];
+        for (int i = 0; i < LOOKUP_KEYS; i++) {
+            tokens[i] = all[(int) ((i * 0x9E3779B1L) % sessions)];
+            headers[i] = "Bearer " + tokens[i];
+            unknown[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        offHeap.close();
+    }
+
+    @Benchmark
+    public User heapGet() {
+        return heap.get(tokens[next++ & (LOOKUP_KEYS - 1)], 0);
+    }
+
+    @Benchmark
+    public User offHeapGet() {
+        return offHeap.get(tokens[next++ & (LOOKUP_KEYS - 1)], 0);
+    }
+
+    @Benchmark
+    public User heapLookupHeader() {
+        return heap.lookup(headers[next++ & (LOOKUP_KEYS - 1)], 7, 0, 0);
+    }
+
+    @Benchmark
+    public User offHeapLookupHeader() {
+        return offHeap.lookup(headers[next++ & (LOOKUP_KEYS - 1)], 7, 0, 0);
+    }
+
+    @Benchmark
+    public User heapUnknown() {
+        return heap.get(unknown[next++ & (LOOKUP_KEYS - 1)], 0);
+    }
+
+    @Benchmark
+    public User offHeapUnknown() {
+        return offHeap.get(unknown[next++ & (LOOKUP_KEYS - 1)], 0);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
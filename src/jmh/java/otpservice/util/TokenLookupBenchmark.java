@@ -0,0 +1,109 @@
+package otpservice.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import otpservice.model.User;
+import otpservice.model.UserRole;
+
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Путь проверки токена в AuthFilter: {@link TokenManager#getUser(String, int)} по заголовку
+ * Authorization для действующего, просроченного и неизвестного токена, в 8 потоков
+ * (как потоки обработки запросов). Просроченные сессии не удаляются фоновой очисткой
+ * до конца замера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class TokenLookupBenchmark {
+    private static final int KEYS = 1 << 14;
+    private static final int SESSIONS = 100_000;
+
+    @Param({"heap", "offheap"})
+    public String store;
+
+    @Param({"false", "true"})
+    public String sliding;
+
+    private String[] valid;
+    private String[] expired;
+    private String[] unknown;
+
+    /** Позиция в массиве токенов, своя у каждого потока */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties config = new Properties();
+        config.setProperty("token.mode", "opaque");
+        config.setProperty("token.store", store);
+        config.setProperty("token.slidingExpiry", sliding);
+        config.setProperty("token.purgeIntervalSeconds", "3600");
+        config.setProperty("token.maxSessions", String.valueOf(SESSIONS * 2));
+        config.setProperty("token.offheap.capacity", String.valueOf(SESSIONS * 4));
+        TokenManager.configure(config);
+
+        SessionStore sessions = TokenManager.sessionStore();
+        long now = System.currentTimeMillis();
+        valid = new String[KEYS];
+        expired = new String[KEYS];
+        unknown = new String[KEYS];
+        for (int i = 0; i < SESSIONS; i++) {
+            String token = UUID.randomUUID().toString();
+            // прошло больше половины срока (30 мин): при скользящем сроке первый вызов продлевает сессию
+            sessions.put(token, new User((long) i, "user" + i, null, null, UserRole.USER),
+                    now + TimeUnit.MINUTES.toMillis(10));
+            if (i < KEYS) {
+                valid[i] = "Bearer " + token;
+            }
+        }
+        for (int i = 0; i < KEYS; i++) {
+            String token = UUID.randomUUID().toString();
+            sessions.put(token, new User((long) (SESSIONS + i), "old" + i, null, null, UserRole.USER), now - 1000);
+            expired[i] = "Bearer " + token;
+            unknown[i] = "Bearer " + UUID.randomUUID();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        TokenManager.shutdown();
+    }
+
+    @Benchmark
+    public User validToken(Cursor cursor) {
+        return TokenManager.getUser(valid[cursor.next++ & (KEYS - 1)], 7);
+    }
+
+    @Benchmark
+    public User expiredToken(Cursor cursor) {
+        return TokenManager.getUser(expired[cursor.next++ & (KEYS - 1)], 7);
+    }
+
+    @Benchmark
+    public User unknownToken(Cursor cursor) {
+        return TokenManager.getUser(unknown[cursor.next++ & (KEYS - 1)], 7);
+    }
+}
@@ -17,8 +17,11 @@ CREATE UNIQUE INDEX only_one_admin ON users (role) WHERE role = 'ADMIN';
 CREATE TABLE IF NOT EXISTS config (
     id          BIGSERIAL PRIMARY KEY,
     length      INT NOT NULL CHECK (length > 0),
-    ttl_seconds INT NOT NULL CHECK (ttl_seconds > 0)
+    ttl_seconds INT NOT NULL CHECK (ttl_seconds > 0),
+    version     BIGINT NOT NULL DEFAULT 1
 );
+-- Версия записи для проверки актуальности кэша конфигурации на узлах (для существующих БД)
+ALTER TABLE config ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1;
 -- Частичный индекс с константой
 -- для существования единственной записи в таблице
 CREATE UNIQUE INDEX config_single_row ON config ((1));
@@ -33,6 +36,8 @@ CREATE TABLE IF NOT EXISTS codes (
     status              VARCHAR(10) NOT NULL CHECK (status IN ('ACTIVE','USED','EXPIRED')),
     created_at          TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT NOW()
 );
+-- Частичный индекс для погашения кода (UPDATE ... WHERE code = ? AND user_id = ? AND status = 'ACTIVE')
+CREATE INDEX IF NOT EXISTS codes_active_code ON codes (code, user_id) WHERE status = 'ACTIVE';
 
 -- Операции и их числовой номер number
 CREATE TABLE IF NOT EXISTS operations (
@@ -1,17 +1,24 @@
 package otpservice.api;
 
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.sun.net.httpserver.HttpExchange;
-import otpservice.dao.impl.OtpCodeDaoImpl;
-import otpservice.dao.impl.OtpConfigDaoImpl;
-import otpservice.dao.impl.UserDaoImpl;
+import otpservice.dao.impl.CachingUserDao;
+import otpservice.model.Operation;
 import otpservice.model.User;
+import otpservice.service.ActiveOtpIndex;
 import otpservice.service.AdminService;
+import otpservice.service.OtpExpiryEngine;
 import otpservice.util.JsonUtil;
+import otpservice.util.PasswordHashingExecutor;
+import otpservice.util.PayloadTooLargeException;
 import otpservice.util.HttpUtils;
+import otpservice.util.TokenManager;
 
 import java.io.IOException;
-import java.net.URI;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Контроллер для административных операций (роль ADMIN).
@@ -21,15 +28,41 @@ import java.util.List;
  *   <li>PATCH  /admin/config     — изменить длину и время жизни OTP-кодов</li>
  *   <li>GET    /admin/users      — получить список всех пользователей без админов</li>
  *   <li>DELETE /admin/users/{id} — удалить пользователя и связанные OTP-коды</li>
+ *   <li>POST   /admin/operations — добавить операцию в каталог</li>
+ *   <li>PATCH  /admin/operations/{number} — изменить название и описание операции</li>
+ *   <li>GET    /admin/limits     — состояние ограничителей одновременных запросов по маршрутам</li>
+ *   <li>GET    /admin/sessions   — размер хранилища токенов и счётчики вытеснений</li>
+ *   <li>GET    /admin/hashing    — загрузка пула хеширования паролей и время ожидания в очереди</li>
+ *   <li>GET    /admin/ratelimits — ограничители частоты запросов по клиентам и пользователям</li>
+ *   <li>GET    /admin/usercache  — размер кэша пользователей, доля попаданий и время загрузки</li>
+ *   <li>GET    /admin/otp        — индекс активных OTP-кодов в памяти и движок их истечения</li>
  * </ul>
  * </p>
  */
 public class AdminController {
-    private final AdminService adminService = new AdminService(
-            new OtpConfigDaoImpl(),
-            new UserDaoImpl(),
-            new OtpCodeDaoImpl()
-    );
+    private static final ObjectReader CONFIG_READER = JsonUtil.readerFor(ConfigRequest.class);
+    private static final ObjectWriter USERS_WRITER = JsonUtil.listWriterFor(User.class);
+    private static final ObjectReader OPERATION_READER = JsonUtil.readerFor(OperationRequest.class);
+    private static final ObjectWriter OPERATION_WRITER = JsonUtil.writerFor(Operation.class);
+
+    private final AdminService adminService;
+    private final PasswordHashingExecutor passwordHashing;
+    private final CachingUserDao userCache;
+    private final ActiveOtpIndex activeCodes;
+    private final OtpExpiryEngine otpExpiryEngine;
+
+    /**
+     * @param userCache кэш пользователей или null, если он выключен ({@code users.cache.enabled=false})
+     */
+    public AdminController(AdminService adminService, PasswordHashingExecutor passwordHashing,
+                           CachingUserDao userCache, ActiveOtpIndex activeCodes,
+                           OtpExpiryEngine otpExpiryEngine) {
+        this.adminService = adminService;
+        this.passwordHashing = passwordHashing;
+        this.userCache = userCache;
+        this.activeCodes = activeCodes;
+        this.otpExpiryEngine = otpExpiryEngine;
+    }
 
     /**
      * Обрабатывает HTTP PATCH запрос на изменение конфигурации OTP.
@@ -40,7 +73,6 @@ public class AdminController {
      *   <li>204 No Content — успешно обновлено</li>
      *   <li>400 Bad Request — если параметры некорректны</li>
      *   <li>415 Unsupported Media Type — если Content-Type не application/json</li>
-     *   <li>405 Method Not Allowed — если метод не PATCH</li>
      *   <li>500 Internal Server Error — другие ошибки</li>
      * </ul>
      *
@@ -48,10 +80,6 @@ public class AdminController {
      * @throws IOException при ошибках ввода-вывода
      */
     public void updateOtpConfig(HttpExchange exchange) throws IOException {
-        if (!"PATCH".equalsIgnoreCase(exchange.getRequestMethod())) {
-            HttpUtils.sendError(exchange, 405, "Method Not Allowed");
-            return;
-        }
         String ct = exchange.getRequestHeaders().getFirst("Content-Type");
         if (ct == null || !ct.contains("application/json")) {
             HttpUtils.sendError(exchange, 415, "Content-Type must be application/json");
@@ -59,11 +87,13 @@ public class AdminController {
         }
 
         try {
-            ConfigRequest req = JsonUtil.fromJson(exchange.getRequestBody(), ConfigRequest.class);
+            ConfigRequest req = JsonUtil.fromJson(exchange.getRequestBody(), CONFIG_READER);
             adminService.updateOtpConfig(req.length, req.ttlSeconds);
             HttpUtils.sendEmptyResponse(exchange, 204);
         } catch (IllegalArgumentException e) {
             HttpUtils.sendError(exchange, 400, e.getMessage());
+        } catch (PayloadTooLargeException e) {
+            throw e; // ответ 413 формирует RequestSizeLimitFilter
         } catch (Exception e) {
             HttpUtils.sendError(exchange, 500, "Internal server error");
         }
@@ -73,7 +103,6 @@ public class AdminController {
      * Обрабатывает HTTP GET запрос для получения списка пользователей без админов.
      * <ul>
      *   <li>200 OK — возвращает JSON-массив пользователей</li>
-     *   <li>405 Method Not Allowed — если метод не GET</li>
      *   <li>500 Internal Server Error — другие ошибки</li>
      * </ul>
      *
@@ -81,14 +110,9 @@ public class AdminController {
      * @throws IOException при ошибках ввода-вывода
      */
     public void listUsers(HttpExchange exchange) throws IOException {
-        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
-            HttpUtils.sendError(exchange, 405, "Method Not Allowed");
-            return;
-        }
         try {
             List<User> users = adminService.getAllUsersWithoutAdmins();
-            String json = JsonUtil.toJson(users);
-            HttpUtils.sendJsonResponse(exchange, 200, json);
+            HttpUtils.sendJson(exchange, 200, USERS_WRITER, users);
         } catch (Exception e) {
             HttpUtils.sendError(exchange, 500, "Internal server error");
         }
@@ -98,28 +122,20 @@ public class AdminController {
      * Обрабатывает HTTP DELETE запрос на удаление пользователя по ID.
      * <ul>
      *   <li>204 No Content — успешно удалено</li>
-     *   <li>400 Bad Request — если ID некорректен</li>
      *   <li>404 Not Found — если пользователь не найден</li>
-     *   <li>405 Method Not Allowed — если метод не DELETE</li>
      *   <li>500 Internal Server Error — другие ошибки</li>
      * </ul>
+     * Нечисловой id не доходит до метода: шаблон {@code {id:long}} не совпадает,
+     * и таблица маршрутов отвечает 404.
      *
      * @param exchange HTTP-контекст текущего запроса
      * @throws IOException при ошибках ввода-вывода
      */
     public void deleteUser(HttpExchange exchange) throws IOException {
-        if (!"DELETE".equalsIgnoreCase(exchange.getRequestMethod())) {
-            HttpUtils.sendError(exchange, 405, "Method Not Allowed");
-            return;
-        }
         try {
-            URI uri = exchange.getRequestURI();
-            String[] segments = uri.getPath().split("/");
-            Long id = Long.valueOf(segments[segments.length - 1]);
+            long id = PathParams.of(exchange).getLong("id");
             adminService.deleteUserAndCodes(id);
             HttpUtils.sendEmptyResponse(exchange, 204);
-        } catch (NumberFormatException e) {
-            HttpUtils.sendError(exchange, 400, "Invalid user ID");
         } catch (IllegalArgumentException e) {
             HttpUtils.sendError(exchange, 404, e.getMessage());
         } catch (Exception e) {
@@ -127,6 +143,179 @@ public class AdminController {
         }
     }
 
+    /**
+     * Обрабатывает HTTP POST запрос на добавление операции в каталог.
+     * Каталог операций в памяти перестраивается сразу после записи в БД.
+     * <ul>
+     *   <li>201 Created — возвращает JSON добавленной операции</li>
+     *   <li>400 Bad Request — если номер или название не заданы</li>
+     *   <li>409 Conflict — если операция с таким номером уже существует</li>
+     *   <li>415 Unsupported Media Type — если Content-Type некорректен</li>
+     *   <li>500 Internal Server Error — другие ошибки</li>
+     * </ul>
+     *
+     * @param exchange HTTP-контекст текущего запроса
+     * @throws IOException при ошибках ввода-вывода
+     */
+    public void addOperation(HttpExchange exchange) throws IOException {
+        String ct = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (ct == null || !ct.contains("application/json")) {
+            HttpUtils.sendError(exchange, 415, "Content-Type must be application/json");
+            return;
+        }
+
+        try {
+            OperationRequest req = JsonUtil.fromJson(exchange.getRequestBody(), OPERATION_READER);
+            if (req.number == null) {
+                HttpUtils.sendError(exchange, 400, "Operation number and name are required");
+                return;
+            }
+            Operation created = adminService.addOperation(req.number, req.name, req.description);
+            HttpUtils.sendJson(exchange, 201, OPERATION_WRITER, created);
+        } catch (IllegalArgumentException e) {
+            HttpUtils.sendError(exchange, 400, e.getMessage());
+        } catch (IllegalStateException e) {
+            HttpUtils.sendError(exchange, 409, e.getMessage());
+        } catch (PayloadTooLargeException e) {
+            throw e; // ответ 413 формирует RequestSizeLimitFilter
+        } catch (Exception e) {
+            HttpUtils.sendError(exchange, 500, "Internal server error");
+        }
+    }
+
+    /**
+     * Обрабатывает HTTP PATCH запрос на изменение названия и описания операции.
+     * Каталог операций в памяти перестраивается сразу после записи в БД.
+     * <ul>
+     *   <li>200 OK — возвращает JSON изменённой операции</li>
+     *   <li>400 Bad Request — если номер вне диапазона или название не задано</li>
+     *   <li>404 Not Found — если операции с таким номером нет (нечисловой номер —
+     *       404 от таблицы маршрутов)</li>
+     *   <li>415 Unsupported Media Type — если Content-Type некорректен</li>
+     *   <li>500 Internal Server Error — другие ошибки</li>
+     * </ul>
+     *
+     * @param exchange HTTP-контекст текущего запроса
+     * @throws IOException при ошибках ввода-вывода
+     */
+    public void updateOperation(HttpExchange exchange) throws IOException {
+        String ct = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (ct == null || !ct.contains("application/json")) {
+            HttpUtils.sendError(exchange, 415, "Content-Type must be application/json");
+            return;
+        }
+
+        try {
+            long number = PathParams.of(exchange).getLong("number");
+            if (number <= 0 || number > Integer.MAX_VALUE) {
+                HttpUtils.sendError(exchange, 400, "Invalid operation number");
+                return;
+            }
+            OperationRequest req = JsonUtil.fromJson(exchange.getRequestBody(), OPERATION_READER);
+            Operation updated = adminService.updateOperation((int) number, req.name, req.description);
+            if (updated == null) {
+                HttpUtils.sendError(exchange, 404, "Operation not found");
+                return;
+            }
+            HttpUtils.sendJson(exchange, 200, OPERATION_WRITER, updated);
+        } catch (IllegalArgumentException e) {
+            HttpUtils.sendError(exchange, 400, e.getMessage());
+        } catch (PayloadTooLargeException e) {
+            throw e; // ответ 413 формирует RequestSizeLimitFilter
+        } catch (Exception e) {
+            HttpUtils.sendError(exchange, 500, "Internal server error");
+        }
+    }
+
+    /**
+     * Обрабатывает HTTP GET запрос для получения состояния ограничителей маршрутов:
+     * текущий лимит, число выполняющихся, допущенных и отклонённых запросов.
+     * <ul>
+     *   <li>200 OK — возвращает JSON-массив по маршрутам</li>
+     * </ul>
+     *
+     * @param exchange HTTP-контекст текущего запроса
+     * @throws IOException при ошибках ввода-вывода
+     */
+    public void listLimits(HttpExchange exchange) throws IOException {
+        List<Map<String, Object>> limits = ConcurrencyLimitFilter.snapshot();
+        HttpUtils.sendJson(exchange, 200, limits);
+    }
+
+    /**
+     * Обрабатывает HTTP GET запрос для получения состояния ограничителей частоты запросов:
+     * лимит, число отслеживаемых ключей, разрешённые и отклонённые (429) запросы.
+     * <ul>
+     *   <li>200 OK — возвращает JSON-массив ограничителей</li>
+     * </ul>
+     *
+     * @param exchange HTTP-контекст текущего запроса
+     * @throws IOException при ошибках ввода-вывода
+     */
+    public void listRateLimits(HttpExchange exchange) throws IOException {
+        HttpUtils.sendJson(exchange, 200, RateLimitFilter.snapshot());
+    }
+
+    /**
+     * Обрабатывает HTTP GET запрос для получения состояния хранилища токенов:
+     * число сессий, лимиты, счётчики истечений и вытеснений, скорость вытеснения в минуту.
+     * <ul>
+     *   <li>200 OK — возвращает JSON-объект со статистикой</li>
+     * </ul>
+     *
+     * @param exchange HTTP-контекст текущего запроса
+     * @throws IOException при ошибках ввода-вывода
+     */
+    public void sessionStats(HttpExchange exchange) throws IOException {
+        HttpUtils.sendJson(exchange, 200, TokenManager.stats());
+    }
+
+    /**
+     * Обрабатывает HTTP GET запрос для получения состояния пула хеширования паролей:
+     * потоки, очередь, число отказов и среднее/максимальное время ожидания в очереди.
+     * <ul>
+     *   <li>200 OK — возвращает JSON-объект со статистикой</li>
+     * </ul>
+     *
+     * @param exchange HTTP-контекст текущего запроса
+     * @throws IOException при ошибках ввода-вывода
+     */
+    public void hashingStats(HttpExchange exchange) throws IOException {
+        HttpUtils.sendJson(exchange, 200, passwordHashing.stats());
+    }
+
+    /**
+     * Обрабатывает HTTP GET запрос для получения состояния кэша пользователей:
+     * размер индексов по id и логину, попадания, промахи, объединённые загрузки и время загрузки из БД.
+     * <ul>
+     *   <li>200 OK — возвращает JSON-объект со статистикой ({"enabled":false}, если кэш выключен)</li>
+     * </ul>
+     *
+     * @param exchange HTTP-контекст текущего запроса
+     * @throws IOException при ошибках ввода-вывода
+     */
+    public void userCacheStats(HttpExchange exchange) throws IOException {
+        HttpUtils.sendJson(exchange, 200, userCache != null ? userCache.stats() : Map.of("enabled", false));
+    }
+
+    /**
+     * Обрабатывает HTTP GET запрос для получения состояния подсистемы OTP-кодов:
+     * индекс активных кодов в памяти (размер, ёмкость, режим, попадания и промахи)
+     * и движок истечения (ожидающие коды, помеченные, пачки, ошибки, перепланирования).
+     * <ul>
+     *   <li>200 OK — возвращает JSON-объект со статистикой</li>
+     * </ul>
+     *
+     * @param exchange HTTP-контекст текущего запроса
+     * @throws IOException при ошибках ввода-вывода
+     */
+    public void otpStats(HttpExchange exchange) throws IOException {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("index", activeCodes.stats());
+        stats.put("expiry", otpExpiryEngine.stats());
+        HttpUtils.sendJson(exchange, 200, stats);
+    }
+
     /**
      * DTO для разбора JSON тела PATCH запроса /admin/config.
      */
@@ -134,4 +323,13 @@ public class AdminController {
         public int length;
         public int ttlSeconds;
     }
+
+    /**
+     * DTO для разбора JSON тела запросов /admin/operations.
+     */
+    private static class OperationRequest {
+        public Integer number;
+        public String name;
+        public String description;
+    }
 }
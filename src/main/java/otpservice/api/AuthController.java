@@ -1,10 +1,14 @@
 package otpservice.api;
 
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.sun.net.httpserver.HttpExchange;
-import otpservice.dao.impl.UserDaoImpl;
+import otpservice.model.TokenPair;
 import otpservice.model.UserRole;
 import otpservice.service.UserService;
 import otpservice.util.JsonUtil;
+import otpservice.util.PayloadTooLargeException;
+import otpservice.util.ServiceOverloadedException;
 import otpservice.util.HttpUtils;
 
 import java.io.IOException;
@@ -16,20 +20,31 @@ import java.util.Map;
  * <ul>
  *   <li>POST /register — регистрация нового пользователя (username, password, role)</li>
  *   <li>POST /login    — аутентификация и выдача токена (username, password)</li>
+ *   <li>POST /token/refresh — обмен refresh-токена на новую пару токенов (refreshToken)</li>
  * </ul>
  */
 public class AuthController {
-    private final UserService userService = new UserService(new UserDaoImpl());
+    private static final ObjectReader REGISTER_READER = JsonUtil.readerFor(RegisterRequest.class);
+    private static final ObjectReader LOGIN_READER = JsonUtil.readerFor(LoginRequest.class);
+    private static final ObjectReader REFRESH_READER = JsonUtil.readerFor(RefreshRequest.class);
+    private static final ObjectWriter TOKENS_WRITER = JsonUtil.writerFor(TokenPair.class);
+    private static final ObjectWriter MAP_WRITER = JsonUtil.writerFor(Map.class);
+
+    private final UserService userService;
+
+    public AuthController(UserService userService) {
+        this.userService = userService;
+    }
 
     /**
      * Обрабатывает HTTP POST запрос на регистрацию пользователя.
-     * Проверяет метод, Content-Type и формат JSON, затем вызывает UserService.register().
+     * Проверяет Content-Type и формат JSON, затем вызывает UserService.register().
      * Возвращает:
      * <ul>
      *   <li>201 Created — при успешной регистрации</li>
      *   <li>409 Conflict — если имя занято или администратор уже существует</li>
      *   <li>415 Unsupported Media Type — если Content-Type некорректен</li>
-     *   <li>405 Method Not Allowed — если метод не POST</li>
+     *   <li>503 Service Unavailable — если пул хеширования паролей перегружен</li>
      *   <li>500 Internal Server Error — при других ошибках</li>
      * </ul>
      *
@@ -37,10 +52,6 @@ public class AuthController {
      * @throws IOException при ошибках чтения/записи
      */
     public void handleRegister(HttpExchange exchange) throws IOException {
-        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
-            HttpUtils.sendError(exchange, 405, "Method Not Allowed");
-            return;
-        }
         String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
         if (contentType == null || !contentType.contains("application/json")) {
             HttpUtils.sendError(exchange, 415, "Content-Type must be application/json");
@@ -48,7 +59,7 @@ public class AuthController {
         }
 
         try {
-            RegisterRequest req = JsonUtil.fromJson(exchange.getRequestBody(), RegisterRequest.class);
+            RegisterRequest req = JsonUtil.fromJson(exchange.getRequestBody(), REGISTER_READER);
 
             // Проверка, не существует ли уже администратор
             if ("ADMIN".equals(req.role) && userService.adminExists()) {
@@ -65,13 +76,16 @@ public class AuthController {
 //            json.put("role", req.role);
 //            String jsonString = mapper.writeValueAsString(json);
 
-            String json = JsonUtil.toJson(Map.of("username", req.username, "role", req.role));
-            System.out.println("json string: " + json);
-            HttpUtils.sendJsonResponse(exchange, 201, json);
+            byte[] json = JsonUtil.toJsonBytes(MAP_WRITER, Map.of("username", req.username, "role", req.role));
+            HttpUtils.sendJsonBytes(exchange, 201, json);
 
 
         } catch (IllegalArgumentException | IllegalStateException e) {
             HttpUtils.sendError(exchange, 409, e.getMessage());
+        } catch (ServiceOverloadedException e) {
+            sendOverloaded(exchange, e);
+        } catch (PayloadTooLargeException e) {
+            throw e; // ответ 413 формирует RequestSizeLimitFilter
         } catch (Exception e) {
             HttpUtils.sendError(exchange, 500, "Internal server error");
         }
@@ -79,13 +93,13 @@ public class AuthController {
 
     /**
      * Обрабатывает HTTP POST запрос на аутентификацию пользователя.
-     * Проверяет метод, Content-Type и формат JSON, затем вызывает UserService.login().
+     * Проверяет Content-Type и формат JSON, затем вызывает UserService.login().
      * Возвращает:
      * <ul>
-     *   <li>200 OK — возвращает JSON {"token":"..."}</li>
+     *   <li>200 OK — возвращает JSON {"token":"...","refreshToken":"...","expiresIn":1800}</li>
      *   <li>401 Unauthorized — если логин или пароль неверны</li>
      *   <li>415 Unsupported Media Type — если Content-Type некорректен</li>
-     *   <li>405 Method Not Allowed — если метод не POST</li>
+     *   <li>503 Service Unavailable — если пул хеширования паролей перегружен</li>
      *   <li>500 Internal Server Error — при других ошибках</li>
      * </ul>
      *
@@ -93,10 +107,6 @@ public class AuthController {
      * @throws IOException при ошибках чтения/записи
      */
     public void handleLogin(HttpExchange exchange) throws IOException {
-        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
-            HttpUtils.sendError(exchange, 405, "Method Not Allowed");
-            return;
-        }
         String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
         if (contentType == null || !contentType.contains("application/json")) {
             HttpUtils.sendError(exchange, 415, "Content-Type must be application/json");
@@ -104,21 +114,64 @@ public class AuthController {
         }
 
         try {
-            LoginRequest req = JsonUtil.fromJson(exchange.getRequestBody(), LoginRequest.class);
-            String token = userService.login(req.username, req.password);
-            if (token == null) {
+            LoginRequest req = JsonUtil.fromJson(exchange.getRequestBody(), LOGIN_READER);
+            TokenPair tokens = userService.login(req.username, req.password);
+            if (tokens == null) {
                 HttpUtils.sendError(exchange, 401, "Unauthorized");
                 return;
             }
-            String json = JsonUtil.toJson(Map.of("token", token)); // Используем сгенерированный токен
-            HttpUtils.sendJsonResponse(exchange, 200, json);
+            byte[] json = JsonUtil.toJsonBytes(TOKENS_WRITER, tokens);
+            HttpUtils.sendJsonBytes(exchange, 200, json);
         } catch (IllegalArgumentException e) {
             HttpUtils.sendError(exchange, 401, e.getMessage());
+        } catch (ServiceOverloadedException e) {
+            sendOverloaded(exchange, e);
+        } catch (PayloadTooLargeException e) {
+            throw e; // ответ 413 формирует RequestSizeLimitFilter
         } catch (Exception e) {
             HttpUtils.sendError(exchange, 500, "Internal server error");
         }
     }
 
+    /**
+     * Обрабатывает HTTP POST запрос на обновление токенов.
+     * Refresh-токен одноразовый: в ответе выдаётся новая пара, старый refresh-токен больше не принимается.
+     * Возвращает:
+     * <ul>
+     *   <li>200 OK — возвращает JSON {"token":"...","refreshToken":"...","expiresIn":1800}</li>
+     *   <li>401 Unauthorized — если refresh-токен недействителен, просрочен или уже использован</li>
+     *   <li>415 Unsupported Media Type — если Content-Type некорректен</li>
+     *   <li>500 Internal Server Error — при других ошибках</li>
+     * </ul>
+     *
+     * @param exchange объект HttpExchange для текущего запроса
+     * @throws IOException при ошибках чтения/записи
+     */
+    public void handleRefresh(HttpExchange exchange) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.contains("application/json")) {
+            HttpUtils.sendError(exchange, 415, "Content-Type must be application/json");
+            return;
+        }
+
+        try {
+            RefreshRequest req = JsonUtil.fromJson(exchange.getRequestBody(), REFRESH_READER);
+            TokenPair tokens = userService.refresh(req.refreshToken);
+            HttpUtils.sendJsonBytes(exchange, 200, JsonUtil.toJsonBytes(TOKENS_WRITER, tokens));
+        } catch (IllegalArgumentException e) {
+            HttpUtils.sendError(exchange, 401, e.getMessage());
+        } catch (PayloadTooLargeException e) {
+            throw e; // ответ 413 формирует RequestSizeLimitFilter
+        } catch (Exception e) {
+            HttpUtils.sendError(exchange, 500, "Internal server error");
+        }
+    }
+
+    private static void sendOverloaded(HttpExchange exchange, ServiceOverloadedException e) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+        HttpUtils.sendError(exchange, 503, "Service overloaded, retry later");
+    }
+
     /**
      * DTO для разбора JSON тела запроса регистрации.
      */
@@ -136,4 +189,11 @@ public class AuthController {
         public String username;
         public String password;
     }
+
+    /**
+     * DTO для разбора JSON тела запроса обновления токенов.
+     */
+    private static class RefreshRequest {
+        public String refreshToken;
+    }
 }
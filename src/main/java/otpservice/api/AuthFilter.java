@@ -16,6 +16,10 @@ import java.io.IOException;
  * <p>
  * Проверяет наличие заголовка Authorization: Bearer &lt;token&gt;,
  * валидирует токен через TokenManager и проверяет требуемую роль.
+ * Токен передаётся в TokenManager вместе со смещением в заголовке, поиск сессии — один.
+ * Без подстроки токен разбирает только хранилище вне кучи ({@code token.store=offheap});
+ * хранилище в куче (по умолчанию) и режим jwt выделяют подстроку на каждый запрос.
+ * Сам токен в журнал не пишется.
  * Если проверка проходит, сохраняет объект User в
  * exchange.setAttribute("user", user) и передаёт управление дальше.
  * Иначе возвращает соответствующий HTTP-статус:
@@ -27,13 +31,17 @@ import java.io.IOException;
  */
 public class AuthFilter extends Filter {
     private static final Logger logger = LoggerFactory.getLogger(AuthFilter.class);
+    private static final String BEARER_PREFIX = "Bearer ";
+
     private final UserRole requiredRole;
+    private final int requiredLevel;
 
     /**
      * @param requiredRole минимальная роль пользователя для доступа к ресурсу
      */
     public AuthFilter(UserRole requiredRole) {
         this.requiredRole = requiredRole;
+        this.requiredLevel = requiredRole.ordinal();
     }
 
     @Override
@@ -44,16 +52,15 @@ public class AuthFilter extends Filter {
     @Override
     public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
         String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        if (authHeader == null || !authHeader.startsWith(BEARER_PREFIX)) {
 
             HttpUtils.sendError(exchange, 401, "Missing or invalid Authorization header");
             return;
         }
-        String token = authHeader.substring(7);
-        // Получаем пользователя по токену
-        User user = TokenManager.getUser(token);
+        // Получаем пользователя по токену (один поиск; копия токена — только в куче и в jwt)
+        User user = TokenManager.getUser(authHeader, BEARER_PREFIX.length());
         if (user == null) {
-            logger.warn("Invalid or expired token: {}", token);
+            logger.debug("Invalid or expired token");
             HttpUtils.sendError(exchange, 401, "Invalid or expired token");
             return;
         }
@@ -65,7 +72,7 @@ public class AuthFilter extends Filter {
 //
 //        System.out.println("check role: " + (user.getRole().ordinal() < requiredRole.ordinal()));
 
-        if (user.getRole().ordinal() < requiredRole.ordinal()) {
+        if (user.getRole().ordinal() < requiredLevel) {
             logger.warn("The operation is not allowed. User role: {}", user.getRole());
             HttpUtils.sendError(exchange, 403, "Forbidden");
             return;
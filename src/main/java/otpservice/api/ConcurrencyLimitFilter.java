@@ -0,0 +1,88 @@
+package otpservice.api;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.util.AdaptiveConcurrencyLimiter;
+import otpservice.util.HttpUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Фильтр контроля допуска (admission control) для маршрута.
+ * <p>
+ * Перед обработкой запроса занимает слот адаптивного ограничителя маршрута.
+ * Если лимит исчерпан, сразу возвращает 503 Service Unavailable с заголовком Retry-After,
+ * не доводя запрос до аутентификации и БД. Фильтр должен стоять первым в цепочке.
+ * </p>
+ */
+public class ConcurrencyLimitFilter extends Filter {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    /** Ограничители всех зарегистрированных маршрутов: путь → ограничитель */
+    private static final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final String retryAfter;
+
+    /**
+     * @param route    путь маршрута (ключ для статистики)
+     * @param settings параметры ограничителя
+     */
+    public ConcurrencyLimitFilter(String route, AdaptiveConcurrencyLimiter.Settings settings) {
+        this.limiter = limiters.computeIfAbsent(route, r -> new AdaptiveConcurrencyLimiter(r, settings));
+        this.retryAfter = String.valueOf(settings.getRetryAfterSeconds());
+    }
+
+    @Override
+    public String description() {
+        return "Адаптивное ограничение одновременных запросов (" + limiter.getName() + ")";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (!limiter.tryAcquire()) {
+            // отказы идут потоком именно при перегрузке, поэтому в лог — только debug;
+            // счётчик отказов маршрута — в GET /admin/limits
+            logger.debug("Request shed on {}: limit={}, inFlight={}",
+                    limiter.getName(), limiter.getLimit(), limiter.getInFlight());
+            exchange.getResponseHeaders().set("Retry-After", retryAfter);
+            HttpUtils.sendError(exchange, 503, "Service overloaded, retry later");
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(exchange);
+            failed = exchange.getResponseCode() >= 500;
+        } finally {
+            limiter.release(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Снимок состояния ограничителей по маршрутам для мониторинга.
+     * @return список {route, limit, inFlight, accepted, rejected}
+     */
+    public static List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        limiters.values().stream()
+                .sorted((a, b) -> a.getName().compareTo(b.getName()))
+                .forEach(l -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("route", l.getName());
+                    row.put("limit", l.getLimit());
+                    row.put("inFlight", l.getInFlight());
+                    row.put("accepted", l.getAcceptedCount());
+                    row.put("rejected", l.getRejectedCount());
+                    result.add(row);
+                });
+        return result;
+    }
+}
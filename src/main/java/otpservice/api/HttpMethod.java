@@ -0,0 +1,40 @@
+package otpservice.api;
+
+/**
+ * HTTP-методы, поддерживаемые таблицей маршрутов.
+ * Порядковый номер используется как индекс в таблице обработчиков узла маршрута.
+ */
+public enum HttpMethod {
+    GET,
+    POST,
+    PUT,
+    PATCH,
+    DELETE;
+
+    /**
+     * Разбирает метод запроса без учёта регистра.
+     * @param method строка метода из запроса
+     * @return метод или null, если он не поддерживается
+     */
+    public static HttpMethod parse(String method) {
+        switch (method) {
+            case "GET":
+                return GET;
+            case "POST":
+                return POST;
+            case "PUT":
+                return PUT;
+            case "PATCH":
+                return PATCH;
+            case "DELETE":
+                return DELETE;
+            default:
+                for (HttpMethod m : values()) {
+                    if (m.name().equalsIgnoreCase(method)) {
+                        return m;
+                    }
+                }
+                return null;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package otpservice.api;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Транспортный уровень HTTP-сервера.
+ * <p>
+ * Транспорт принимает соединения, разбирает запросы HTTP/1.1 и передаёт их
+ * единому обработчику ({@link RouteTable}) в виде {@link com.sun.net.httpserver.HttpExchange},
+ * поэтому контроллеры и фильтры не зависят от выбранной реализации.
+ * Реализации создаются через {@link HttpTransportFactory}.
+ * </p>
+ */
+public interface HttpTransport {
+
+    /**
+     * Запускает приём соединений.
+     * @throws IOException если не удалось открыть порт
+     */
+    void start() throws IOException;
+
+    /**
+     * Останавливает приём соединений и закрывает открытые.
+     * @param delaySeconds максимальное время ожидания завершения текущих обменов
+     */
+    void stop(int delaySeconds);
+
+    /**
+     * @return адрес, на котором принимаются соединения
+     */
+    InetSocketAddress getAddress();
+}
@@ -0,0 +1,71 @@
+package otpservice.api;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * Фабрика транспортов HTTP.
+ * <p>
+ * Транспорт задаётся параметром {@code server.transport} в application.properties:
+ * <ul>
+ *   <li>{@code jdk} — встроенный com.sun.net.httpserver.HttpServer (по умолчанию)</li>
+ *   <li>{@code nio} — собственный неблокирующий сервер HTTP/1.1 с несколькими селекторами
+ *                     ({@code server.nio.selectorThreads}, {@code server.nio.keepAliveSeconds},
+ *                     {@code server.nio.bufferSize}, {@code server.nio.maxRequestBytes})</li>
+ * </ul>
+ * </p>
+ */
+public final class HttpTransportFactory {
+
+    /** Доступные транспорты */
+    public enum Type {
+        JDK,
+        NIO
+    }
+
+    private HttpTransportFactory() { /* запрет создания экземпляров */ }
+
+    /**
+     * @param config параметры из application.properties
+     * @return выбранный транспорт
+     * @throws IllegalArgumentException если транспорт указан неверно
+     */
+    public static Type resolveType(Properties config) {
+        String value = config.getProperty("server.transport", "jdk").trim();
+        try {
+            return Type.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported server.transport: " + value, e);
+        }
+    }
+
+    /**
+     * Создаёт транспорт (без запуска).
+     * @param config   параметры из application.properties
+     * @param address  адрес и порт
+     * @param handler  обработчик всех запросов
+     * @param executor исполнитель обработчиков или null
+     * @throws IOException если не удалось открыть порт
+     */
+    public static HttpTransport create(Properties config, InetSocketAddress address,
+                                       HttpHandler handler, Executor executor) throws IOException {
+        switch (resolveType(config)) {
+            case NIO:
+                int selectorThreads = Integer.parseInt(config.getProperty("server.nio.selectorThreads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors())));
+                int keepAliveSeconds = Integer.parseInt(config.getProperty("server.nio.keepAliveSeconds", "30"));
+                int bufferSize = Integer.parseInt(config.getProperty("server.nio.bufferSize", "16384"));
+                int maxRequestBytes = Integer.parseInt(config.getProperty("server.nio.maxRequestBytes", "65536"));
+                return new NioHttpTransport(address, handler, executor,
+                        selectorThreads, keepAliveSeconds, bufferSize, maxRequestBytes);
+            case JDK:
+            default:
+                return new JdkHttpTransport(address, handler, executor);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package otpservice.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.util.HttpUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Транспорт на встроенном {@link HttpServer} (com.sun.net.httpserver).
+ * Таблица маршрутов регистрируется единственным контекстом "/".
+ * <p>
+ * Если исполнитель отклоняет запрос (очередь пула переполнена), обмен передаётся отдельному
+ * потоку {@code http-shed}, который без вызова обработчика отвечает 503 с Retry-After.
+ * Поток-диспетчер сервера при этом не блокируется. Если переполнена и очередь этого потока,
+ * сервер закрывает соединение.
+ * </p>
+ */
+public class JdkHttpTransport implements HttpTransport {
+    private static final Logger logger = LoggerFactory.getLogger(JdkHttpTransport.class);
+
+    private static final int SHED_QUEUE_SIZE = 256;
+    /** Признак потока, отвечающего 503 на отклонённые запросы */
+    private static final ThreadLocal<Boolean> SHEDDING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor shedExecutor;
+    private final AtomicLong shed = new AtomicLong();
+
+    /**
+     * @param address  адрес и порт
+     * @param handler  обработчик всех запросов
+     * @param executor исполнитель обработчиков или null (поток-диспетчер сервера)
+     * @throws IOException если не удалось открыть порт
+     */
+    public JdkHttpTransport(InetSocketAddress address, HttpHandler handler, Executor executor) throws IOException {
+        this.server = HttpServer.create(address, 0);
+        if (executor == null) {
+            this.shedExecutor = null;
+            server.createContext("/", handler);
+            server.setExecutor(null);
+            return;
+        }
+        this.shedExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(SHED_QUEUE_SIZE), r -> {
+                    Thread t = new Thread(() -> {
+                        SHEDDING.set(Boolean.TRUE);
+                        r.run();
+                    }, "http-shed");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        server.createContext("/", exchange -> {
+            if (SHEDDING.get()) {
+                shed(exchange);
+            } else {
+                handler.handle(exchange);
+            }
+        });
+        server.setExecutor(task -> {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                shedExecutor.execute(task);
+            }
+        });
+    }
+
+    private void shed(HttpExchange exchange) throws IOException {
+        long total = shed.incrementAndGet();
+        if (Long.bitCount(total) == 1) {
+            // логируем 1, 2, 4, 8... отклонение, чтобы не засыпать журнал при перегрузке
+            logger.warn("HTTP executor saturated, {} requests shed with 503 so far", total);
+        }
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        HttpUtils.sendError(exchange, 503, "Service overloaded, retry later");
+    }
+
+    @Override
+    public void start() {
+        server.start();
+        logger.info("JDK HttpServer transport listening on {}", server.getAddress());
+    }
+
+    @Override
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        if (shedExecutor != null) {
+            shedExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+}
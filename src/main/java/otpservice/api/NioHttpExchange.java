@@ -0,0 +1,319 @@
+package otpservice.api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Обмен запрос/ответ транспорта {@link NioHttpTransport}.
+ * <p>
+ * Тело запроса уже полностью прочитано селектором. Ответ буферизуется целиком и при закрытии
+ * потока тела (или сразу, если {@code sendResponseHeaders(code, -1)}) сериализуется в байты
+ * HTTP/1.1 с Content-Length и передаётся соединению для записи. Размер тела, переданный в
+ * {@code sendResponseHeaders}, для chunked-ответов (0) не используется: длина известна после буферизации.
+ * </p>
+ */
+class NioHttpExchange extends HttpExchange {
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+    private static volatile CachedDate cachedDate = new CachedDate(0, "");
+
+    private final NioHttpTransport.Connection connection;
+    private final String method;
+    private final URI uri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final boolean keepAlive;
+
+    private final ResponseBody buffer = new ResponseBody();
+    private InputStream requestBody;
+    private OutputStream responseBody = buffer;
+    private int responseCode = -1;
+    private boolean completed;
+
+    NioHttpExchange(NioHttpTransport.Connection connection, String method, URI uri, String protocol,
+                    Headers requestHeaders, byte[] body, boolean keepAlive) {
+        this.connection = connection;
+        this.method = method;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+        this.requestBody = new ByteArrayInputStream(body);
+        this.keepAlive = keepAlive;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    /** Контексты не используются: маршрутизацию выполняет {@link RouteTable} */
+    @Override
+    public HttpContext getHttpContext() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        try {
+            requestBody.close();
+            if (responseCode != -1) {
+                responseBody.close();
+            }
+        } catch (IOException ignored) {
+            // тела в памяти, ошибок ввода-вывода здесь нет
+        }
+        if (!completed) {
+            completed = true;
+            connection.respond(null, true);
+        }
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (responseCode != -1) {
+            throw new IOException("headers already sent");
+        }
+        responseCode = rCode;
+        if (responseLength == -1 || rCode == 204 || rCode == 304 || method.equals("HEAD")) {
+            complete();
+        }
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            requestBody = i;
+        }
+        if (o != null) {
+            responseBody = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    /**
+     * Завершает обмен после возврата из обработчика: если ответ так и не был отправлен,
+     * клиент получает 500, если тело не было закрыто — отправляется накопленное.
+     */
+    void finish() throws IOException {
+        if (completed) {
+            return;
+        }
+        if (responseCode == -1) {
+            sendResponseHeaders(500, -1);
+        } else {
+            responseBody.close();
+        }
+    }
+
+    /** @return true, если ответ уже передан соединению */
+    boolean isCompleted() {
+        return completed;
+    }
+
+    private void complete() {
+        if (completed) {
+            return;
+        }
+        completed = true;
+        connection.respond(encodeResponse(), !keepAlive);
+    }
+
+    private byte[] encodeResponse() {
+        boolean bodyAllowed = responseCode != 204 && responseCode != 304 && responseCode >= 200;
+        int bodyLength = bodyAllowed ? buffer.size() : 0;
+
+        StringBuilder head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(responseCode).append(' ').append(reasonPhrase(responseCode)).append("\r\n");
+        head.append("Date: ").append(httpDate()).append("\r\n");
+        if (bodyAllowed) {
+            head.append("Content-Length: ").append(bodyLength).append("\r\n");
+        }
+        if (!keepAlive) {
+            head.append("Connection: close\r\n");
+        }
+        for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+            if (header.getKey().equalsIgnoreCase("Content-Length")) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        head.append("\r\n");
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        if (bodyLength == 0 || method.equals("HEAD")) {
+            return headBytes;
+        }
+        byte[] response = new byte[headBytes.length + bodyLength];
+        System.arraycopy(headBytes, 0, response, 0, headBytes.length);
+        buffer.copyTo(response, headBytes.length);
+        return response;
+    }
+
+    private static String httpDate() {
+        long second = System.currentTimeMillis() / 1000;
+        CachedDate date = cachedDate;
+        if (date.second != second) {
+            date = new CachedDate(second, HTTP_DATE.format(ZonedDateTime.now(ZoneOffset.UTC)));
+            cachedDate = date;
+        }
+        return date.value;
+    }
+
+    static String reasonPhrase(int code) {
+        switch (code) {
+            case 100: return "Continue";
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 413: return "Payload Too Large";
+            case 415: return "Unsupported Media Type";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return "";
+        }
+    }
+
+    /** Значение заголовка Date, пересчитываемое не чаще раза в секунду */
+    private static final class CachedDate {
+        final long second;
+        final String value;
+
+        CachedDate(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
+    }
+
+    /** Буфер тела ответа; закрытие завершает обмен */
+    private final class ResponseBody extends ByteArrayOutputStream {
+        ResponseBody() {
+            super(512);
+        }
+
+        @Override
+        public void write(int b) {
+            checkHeadersSent();
+            super.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            checkHeadersSent();
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            if (responseCode != -1) {
+                complete();
+            }
+        }
+
+        void copyTo(byte[] target, int offset) {
+            System.arraycopy(buf, 0, target, offset, count);
+        }
+
+        private void checkHeadersSent() {
+            if (responseCode == -1) {
+                throw new IllegalStateException("sendResponseHeaders() must be called before writing the body");
+            }
+            if (completed) {
+                throw new IllegalStateException("response already completed");
+            }
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package otpservice.api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.util.HttpUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Неблокирующий HTTP/1.1-транспорт на java.nio с несколькими потоками-селекторами.
+ * <p>
+ * Серверный сокет зарегистрирован во всех селекторах, поэтому приём соединений распределяется
+ * между ними, а не идёт через один цикл accept. Каждый селектор обслуживает свои соединения:
+ * читает и разбирает запросы через собственный прямой (direct) ByteBuffer, переиспользуемый
+ * для всех его соединений, и передаёт готовый запрос исполнителю обработчиков.
+ * </p>
+ * <ul>
+ *   <li>Keep-alive: HTTP/1.1 по умолчанию, HTTP/1.0 — при {@code Connection: keep-alive};
+ *       простаивающие соединения закрываются через {@code keepAliveSeconds}.</li>
+ *   <li>Конвейеризация (pipelining): пока запрос обрабатывается, чтение из соединения
+ *       приостановлено, следующий запрос разбирается только после записи ответа — порядок
+ *       ответов всегда совпадает с порядком запросов.</li>
+ *   <li>Тела запросов принимаются только с Content-Length (chunked — 501),
+ *       запрос больше {@code maxRequestBytes} — 413, заголовки больше 8 КБ — 431.</li>
+ * </ul>
+ */
+public class NioHttpTransport implements HttpTransport {
+    private static final Logger logger = LoggerFactory.getLogger(NioHttpTransport.class);
+
+    private static final int MAX_HEADER_BYTES = 8192;
+    private static final int MAX_ACCEPTS_PER_WAKEUP = 64;
+    private static final long SWEEP_INTERVAL_MS = 1000;
+    private static final byte[] CONTINUE_100 = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final InetSocketAddress address;
+    private final HttpHandler handler;
+    private final Executor executor;
+    private final int selectorThreads;
+    private final long keepAliveNanos;
+    private final int bufferSize;
+    private final int maxRequestBytes;
+
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] loops;
+
+    /**
+     * @param address         адрес и порт
+     * @param handler         обработчик всех запросов
+     * @param executor        исполнитель обработчиков; null — обработка на потоке селектора
+     * @param selectorThreads число потоков-селекторов
+     * @param keepAliveSeconds время простоя keep-alive соединения
+     * @param bufferSize      размер прямых буферов чтения/записи на селектор
+     * @param maxRequestBytes максимальный размер запроса (заголовки + тело)
+     */
+    public NioHttpTransport(InetSocketAddress address, HttpHandler handler, Executor executor,
+                            int selectorThreads, int keepAliveSeconds, int bufferSize, int maxRequestBytes) {
+        this.address = address;
+        this.handler = handler;
+        this.executor = executor;
+        this.selectorThreads = Math.max(1, selectorThreads);
+        this.keepAliveNanos = TimeUnit.SECONDS.toNanos(keepAliveSeconds);
+        this.bufferSize = bufferSize;
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    @Override
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+
+        loops = new EventLoop[selectorThreads];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+        logger.info("NIO transport listening on {}: selectors={}, keepAlive={}s, maxRequest={} bytes",
+                getAddress(), selectorThreads, TimeUnit.NANOSECONDS.toSeconds(keepAliveNanos), maxRequestBytes);
+    }
+
+    @Override
+    public void stop(int delaySeconds) {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close server socket: {}", e.getMessage());
+        }
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, delaySeconds));
+        for (EventLoop loop : loops) {
+            try {
+                loop.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            return address;
+        }
+    }
+
+    /** Поток-селектор со своими соединениями и прямыми буферами */
+    private final class EventLoop implements Runnable {
+        final Thread thread;
+        final Selector selector;
+        final ByteBuffer readBuffer = ByteBuffer.allocateDirect(bufferSize);
+        final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(bufferSize);
+        /** Соединения с готовым ответом от потоков-обработчиков */
+        final ConcurrentLinkedQueue<Connection> completed = new ConcurrentLinkedQueue<>();
+        volatile boolean running = true;
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            this.thread = new Thread(this, "http-nio-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long lastSweep = System.nanoTime();
+            while (running) {
+                try {
+                    selector.select(SWEEP_INTERVAL_MS);
+                    drainCompleted();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.onReadable();
+                            } else if (key.isWritable()) {
+                                connection.drive();
+                            }
+                        }
+                    }
+                    long now = System.nanoTime();
+                    if (now - lastSweep >= TimeUnit.MILLISECONDS.toNanos(SWEEP_INTERVAL_MS)) {
+                        closeIdle(now);
+                        lastSweep = now;
+                    }
+                } catch (IOException e) {
+                    logger.error("Selector loop {} failed: {}", thread.getName(), e.getMessage(), e);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // завершение работы
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+
+        void schedule(Connection connection) {
+            completed.offer(connection);
+            selector.wakeup();
+        }
+
+        private void accept() {
+            for (int i = 0; i < MAX_ACCEPTS_PER_WAKEUP; i++) {
+                SocketChannel channel;
+                try {
+                    channel = serverChannel.accept();
+                } catch (IOException e) {
+                    logger.warn("Accept failed: {}", e.getMessage());
+                    return;
+                }
+                if (channel == null) {
+                    return; // соединение забрал другой селектор
+                }
+                try {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    Connection connection = new Connection(this, channel);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (IOException e) {
+                    logger.warn("Failed to register connection: {}", e.getMessage());
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // соединение уже недоступно
+                    }
+                }
+            }
+        }
+
+        private void drainCompleted() {
+            Connection connection;
+            while ((connection = completed.poll()) != null) {
+                connection.onResponse();
+            }
+        }
+
+        private void closeIdle(long now) {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    Connection connection = (Connection) key.attachment();
+                    if (!connection.inFlight && connection.out.isEmpty()
+                            && now - connection.lastActive > keepAliveNanos) {
+                        connection.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Состояние одного TCP-соединения. Все поля, кроме ответа от обработчика,
+     * читаются и изменяются только потоком своего селектора.
+     */
+    final class Connection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        SelectionKey key;
+
+        /** Принятые, но ещё не разобранные байты: [inStart, inEnd) */
+        private byte[] in = new byte[1024];
+        private int inStart;
+        private int inEnd;
+        /** Разобранные заголовки запроса, ожидающего тело */
+        private RequestHead head;
+
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        boolean inFlight;
+        private boolean closeAfterWrite;
+        private boolean closed;
+        long lastActive = System.nanoTime();
+
+        /** Ответ, переданный потоком-обработчиком (null — закрыть соединение) */
+        private volatile byte[] response;
+        private volatile boolean responseClose;
+
+        Connection(EventLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+        }
+
+        InetSocketAddress getRemoteAddress() {
+            try {
+                return (InetSocketAddress) channel.getRemoteAddress();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        InetSocketAddress getLocalAddress() {
+            try {
+                return (InetSocketAddress) channel.getLocalAddress();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Вызывается обменом из потока-обработчика: передаёт готовый ответ селектору.
+         * @param bytes ответ целиком или null, чтобы закрыть соединение без ответа
+         * @param close закрыть соединение после записи
+         */
+        void respond(byte[] bytes, boolean close) {
+            this.response = bytes;
+            this.responseClose = close;
+            loop.schedule(this);
+        }
+
+        void onResponse() {
+            if (closed) {
+                return;
+            }
+            byte[] bytes = response;
+            response = null;
+            inFlight = false;
+            if (bytes == null) {
+                close();
+                return;
+            }
+            out.add(ByteBuffer.wrap(bytes));
+            closeAfterWrite = responseClose;
+            drive();
+        }
+
+        void onReadable() {
+            ByteBuffer buffer = loop.readBuffer;
+            buffer.clear();
+            int n;
+            try {
+                n = channel.read(buffer);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (n < 0) {
+                close();
+                return;
+            }
+            if (n == 0) {
+                return;
+            }
+            buffer.flip();
+            ensureCapacity(n);
+            buffer.get(in, inEnd, n);
+            inEnd += n;
+            lastActive = System.nanoTime();
+            drive();
+        }
+
+        /**
+         * Продвигает соединение: дописывает ответы, разбирает следующий запрос
+         * и выставляет интерес селектора.
+         */
+        void drive() {
+            try {
+                while (!closed) {
+                    if (!out.isEmpty() && !flush()) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    if (closeAfterWrite) {
+                        close();
+                        return;
+                    }
+                    if (inFlight) {
+                        key.interestOps(0);
+                        return;
+                    }
+                    if (!parseNext()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /** @return true, если вся очередь записана */
+        private boolean flush() throws IOException {
+            ByteBuffer direct = loop.writeBuffer;
+            while (!out.isEmpty()) {
+                ByteBuffer src = out.peek();
+                direct.clear();
+                int length = Math.min(direct.remaining(), src.remaining());
+                direct.put(direct.position(), src, src.position(), length);
+                direct.limit(length);
+                int written = channel.write(direct);
+                src.position(src.position() + written);
+                if (!src.hasRemaining()) {
+                    out.poll();
+                }
+                if (written < length) {
+                    return false;
+                }
+            }
+            lastActive = System.nanoTime();
+            return true;
+        }
+
+        /**
+         * Разбирает следующий запрос из буфера.
+         * @return true, если запрос передан обработчику или поставлен ответ в очередь
+         */
+        private boolean parseNext() {
+            if (head == null) {
+                int end = indexOfHeaderEnd();
+                if (end < 0) {
+                    if (inEnd - inStart > MAX_HEADER_BYTES) {
+                        reject(431, "Request header too large");
+                        return true;
+                    }
+                    return false;
+                }
+                head = RequestHead.parse(in, inStart, end);
+                if (head == null) {
+                    reject(400, "Malformed request");
+                    return true;
+                }
+                inStart = end + 4;
+                if (head.headers.containsKey("Transfer-Encoding")) {
+                    reject(501, "Chunked request bodies are not supported");
+                    return true;
+                }
+                if (head.contentLength < 0) {
+                    reject(400, "Invalid Content-Length");
+                    return true;
+                }
+                if (head.contentLength > maxRequestBytes) {
+                    reject(413, "Request body too large");
+                    return true;
+                }
+            }
+            int available = inEnd - inStart;
+            if (available < head.contentLength) {
+                if (head.expectContinue) {
+                    head.expectContinue = false;
+                    out.add(ByteBuffer.wrap(CONTINUE_100));
+                    return true;
+                }
+                return false;
+            }
+
+            RequestHead request = head;
+            head = null;
+            byte[] body = Arrays.copyOfRange(in, inStart, inStart + request.contentLength);
+            inStart += request.contentLength;
+            if (inStart == inEnd) {
+                inStart = 0;
+                inEnd = 0;
+            }
+            dispatch(new NioHttpExchange(this, request.method, request.uri, request.protocol,
+                    request.headers, body, request.keepAlive));
+            return true;
+        }
+
+        private void dispatch(NioHttpExchange exchange) {
+            inFlight = true;
+            Runnable task = () -> handle(exchange);
+            if (executor == null) {
+                task.run();
+                return;
+            }
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                inFlight = false;
+                reject(503, "Service overloaded, retry later");
+            }
+        }
+
+        private void handle(NioHttpExchange exchange) {
+            try {
+                handler.handle(exchange);
+                exchange.finish();
+            } catch (Throwable e) {
+                logger.error("Unhandled error in {} {}: {}",
+                        exchange.getRequestMethod(), exchange.getRequestURI(), e.getMessage(), e);
+                if (!exchange.isCompleted() && exchange.getResponseCode() == -1) {
+                    try {
+                        HttpUtils.sendError(exchange, 500, "Internal server error");
+                        return;
+                    } catch (IOException | RuntimeException ignored) {
+                        // закрываем соединение ниже
+                    }
+                }
+                exchange.close();
+            }
+        }
+
+        /** Ответ об ошибке разбора с закрытием соединения (поток селектора) */
+        private void reject(int status, String message) {
+            logger.warn("Rejecting request from {}: {} {}", getRemoteAddress(), status, message);
+            String response = "HTTP/1.1 " + status + " " + NioHttpExchange.reasonPhrase(status) + "\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: " + (message.length() + 12) + "\r\n"
+                    + "Connection: close\r\n\r\n"
+                    + "{\"error\":\"" + message + "\"}";
+            out.add(ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+            closeAfterWrite = true;
+            head = null;
+        }
+
+        private int indexOfHeaderEnd() {
+            for (int i = inStart; i + 3 < inEnd; i++) {
+                if (in[i] == '\r' && in[i + 1] == '\n' && in[i + 2] == '\r' && in[i + 3] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (inEnd + extra <= in.length) {
+                return;
+            }
+            int pending = inEnd - inStart;
+            if (pending + extra <= in.length) {
+                System.arraycopy(in, inStart, in, 0, pending);
+            } else {
+                byte[] grown = new byte[Math.max(in.length * 2, pending + extra)];
+                System.arraycopy(in, inStart, grown, 0, pending);
+                in = grown;
+            }
+            inStart = 0;
+            inEnd = pending;
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // соединение уже закрыто клиентом
+            }
+        }
+    }
+
+    /** Разобранная строка запроса и заголовки */
+    private static final class RequestHead {
+        String method;
+        URI uri;
+        String protocol;
+        Headers headers;
+        int contentLength;
+        boolean keepAlive;
+        boolean expectContinue;
+
+        /**
+         * @return заголовок запроса или null, если он некорректен
+         */
+        static RequestHead parse(byte[] data, int from, int to) {
+            String[] lines = new String(data, from, to - from, StandardCharsets.ISO_8859_1).split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+                return null;
+            }
+            RequestHead head = new RequestHead();
+            head.method = requestLine[0];
+            head.protocol = requestLine[2];
+            try {
+                head.uri = new URI(requestLine[1]);
+            } catch (URISyntaxException e) {
+                return null;
+            }
+            head.headers = new Headers();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) {
+                    return null;
+                }
+                head.headers.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+            }
+            String contentLength = head.headers.getFirst("Content-Length");
+            try {
+                head.contentLength = contentLength == null ? 0 : Integer.parseInt(contentLength);
+            } catch (NumberFormatException e) {
+                head.contentLength = -1;
+            }
+            String connection = head.headers.getFirst("Connection");
+            head.keepAlive = head.protocol.equals("HTTP/1.1")
+                    ? !"close".equalsIgnoreCase(connection)
+                    : "keep-alive".equalsIgnoreCase(connection);
+            head.expectContinue = "100-continue".equalsIgnoreCase(head.headers.getFirst("Expect"));
+            return head;
+        }
+    }
+}
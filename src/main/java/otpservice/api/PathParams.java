@@ -0,0 +1,73 @@
+package otpservice.api;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.util.Arrays;
+
+/**
+ * Параметры пути, извлечённые таблицей маршрутов (например, {id} в /admin/users/{id}).
+ * Хранятся в атрибуте запроса {@link #ATTRIBUTE}.
+ */
+public final class PathParams {
+    /** Имя атрибута HttpExchange с параметрами пути */
+    public static final String ATTRIBUTE = "pathParams";
+
+    static final PathParams EMPTY = new PathParams(new String[0], new Object[0]);
+
+    private final String[] names;
+    private final Object[] values;
+
+    PathParams(String[] names, Object[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * @param exchange текущий запрос
+     * @return параметры пути (пустые, если маршрут их не содержит)
+     */
+    public static PathParams of(HttpExchange exchange) {
+        PathParams params = (PathParams) exchange.getAttribute(ATTRIBUTE);
+        return params != null ? params : EMPTY;
+    }
+
+    /**
+     * @param name имя параметра
+     * @return строковое значение параметра или null
+     */
+    public String get(String name) {
+        Object value = find(name);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Возвращает числовой параметр, объявленный в шаблоне как {name:long}.
+     * @param name имя параметра
+     * @return значение параметра
+     * @throws IllegalArgumentException если параметр отсутствует
+     */
+    public long getLong(String name) {
+        Object value = find(name);
+        if (value instanceof Long) {
+            return (Long) value;
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Missing path parameter: " + name);
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    private Object find(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "PathParams{" + Arrays.toString(names) + "=" + Arrays.toString(values) + '}';
+    }
+}
@@ -0,0 +1,74 @@
+package otpservice.api;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.util.HttpUtils;
+import otpservice.util.LimitedInputStream;
+import otpservice.util.PayloadTooLargeException;
+
+import java.io.IOException;
+
+/**
+ * Фильтр ограничения размера тела запроса для маршрута.
+ * <p>
+ * Запрос с Content-Length больше лимита отклоняется сразу с 413 Payload Too Large,
+ * до аутентификации и чтения тела. Для запросов без Content-Length (chunked) поток тела
+ * оборачивается в {@link LimitedInputStream}: превышение обнаруживается во время разбора,
+ * и, если ответ ещё не отправлен, клиент также получает 413.
+ * </p>
+ */
+public class RequestSizeLimitFilter extends Filter {
+    private static final Logger logger = LoggerFactory.getLogger(RequestSizeLimitFilter.class);
+
+    private final String route;
+    private final long maxBodyBytes;
+
+    /**
+     * @param route        путь маршрута (для логов)
+     * @param maxBodyBytes максимальный размер тела запроса в байтах
+     */
+    public RequestSizeLimitFilter(String route, long maxBodyBytes) {
+        this.route = route;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    public String description() {
+        return "Ограничение размера тела запроса (" + route + " ≤ " + maxBodyBytes + " байт)";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null) {
+            long declared;
+            try {
+                declared = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                HttpUtils.sendError(exchange, 400, "Invalid Content-Length");
+                return;
+            }
+            if (declared > maxBodyBytes) {
+                reject(exchange, declared);
+                return;
+            }
+        }
+        exchange.setStreams(new LimitedInputStream(exchange.getRequestBody(), maxBodyBytes), null);
+        try {
+            chain.doFilter(exchange);
+        } catch (PayloadTooLargeException e) {
+            if (exchange.getResponseCode() == -1) {
+                reject(exchange, -1);
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private void reject(HttpExchange exchange, long declared) throws IOException {
+        logger.warn("Request body too large on {}: declared={}, limit={}", route, declared, maxBodyBytes);
+        HttpUtils.sendError(exchange, 413, "Request body too large");
+    }
+}
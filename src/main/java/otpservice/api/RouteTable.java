@@ -0,0 +1,235 @@
+package otpservice.api;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.util.HttpUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Предварительно построенная таблица маршрутов.
+ * <p>
+ * Шаблоны путей раскладываются в префиксное дерево по сегментам; в каждом узле хранится
+ * массив обработчиков, индексированный {@link HttpMethod#ordinal()}. Поиск маршрута —
+ * один проход по сегментам пути с обращением к HashMap на сегмент, без перебора маршрутов.
+ * Поддерживаются параметры пути {@code {name}} (строка) и {@code {name:long}} (число);
+ * значения доступны через {@link PathParams#of(HttpExchange)}.
+ * </p>
+ * <ul>
+ *   <li>404 Not Found — путь не найден в таблице</li>
+ *   <li>405 Method Not Allowed — путь найден, но метод не зарегистрирован (с заголовком Allow)</li>
+ * </ul>
+ */
+public class RouteTable implements HttpHandler {
+    private static final Logger logger = LoggerFactory.getLogger(RouteTable.class);
+    private static final int METHOD_COUNT = HttpMethod.values().length;
+
+    private final Node root = new Node();
+    private int maxParams;
+
+    /**
+     * Регистрирует обработчик маршрута.
+     *
+     * @param method  HTTP-метод
+     * @param pattern шаблон пути, например /admin/users/{id:long}
+     * @param handler обработчик
+     * @param filters фильтры маршрута в порядке выполнения
+     * @throws IllegalStateException если маршрут уже зарегистрирован
+     */
+    public void add(HttpMethod method, String pattern, HttpHandler handler, List<Filter> filters) {
+        Node node = root;
+        int params = 0;
+        for (String segment : pattern.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                String spec = segment.substring(1, segment.length() - 1);
+                int colon = spec.indexOf(':');
+                String name = colon < 0 ? spec : spec.substring(0, colon);
+                ParamType type = colon < 0 ? ParamType.STRING : ParamType.parse(spec.substring(colon + 1));
+                if (node.param == null) {
+                    node.param = new Node();
+                    node.paramName = name;
+                    node.paramType = type;
+                } else if (!node.paramName.equals(name) || node.paramType != type) {
+                    throw new IllegalStateException("Conflicting path parameter in " + pattern);
+                }
+                node = node.param;
+                params++;
+            } else {
+                node = node.literals.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+        if (node.routes[method.ordinal()] != null) {
+            throw new IllegalStateException("Route already registered: " + method + " " + pattern);
+        }
+        node.routes[method.ordinal()] = new Route(method + " " + pattern, handler, List.copyOf(filters));
+        node.allow = buildAllow(node.routes);
+        maxParams = Math.max(maxParams, params);
+        logger.info("Route registered: {} {}", method, pattern);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Object[] values = maxParams == 0 ? null : new Object[maxParams];
+        Match match = new Match(values);
+        Node node = find(root, path, 0, match, 0);
+        if (node == null || node.allow == null) {
+            HttpUtils.sendError(exchange, 404, "Not Found");
+            return;
+        }
+        HttpMethod method = HttpMethod.parse(exchange.getRequestMethod());
+        Route route = method != null ? node.routes[method.ordinal()] : null;
+        if (route == null) {
+            exchange.getResponseHeaders().set("Allow", node.allow);
+            HttpUtils.sendError(exchange, 405, "Method Not Allowed");
+            return;
+        }
+        if (match.count > 0) {
+            exchange.setAttribute(PathParams.ATTRIBUTE, new PathParams(match.names(), match.values(values)));
+        }
+        new Filter.Chain(route.filters, route.handler).doFilter(exchange);
+    }
+
+    /**
+     * Рекурсивный поиск узла: сначала точное совпадение сегмента, затем параметр.
+     */
+    private Node find(Node node, String path, int pos, Match match, int depth) {
+        while (pos < path.length() && path.charAt(pos) == '/') {
+            pos++;
+        }
+        if (pos >= path.length()) {
+            return node;
+        }
+        int end = path.indexOf('/', pos);
+        if (end < 0) {
+            end = path.length();
+        }
+        String segment = path.substring(pos, end);
+
+        Node literal = node.literals.get(segment);
+        if (literal != null) {
+            Node found = find(literal, path, end, match, depth);
+            if (found != null && found.allow != null) {
+                return found;
+            }
+        }
+        if (node.param != null) {
+            Object value = node.paramType.convert(segment);
+            if (value != null) {
+                match.set(depth, node.paramName, value);
+                Node found = find(node.param, path, end, match, depth + 1);
+                if (found != null && found.allow != null) {
+                    match.count = Math.max(match.count, depth + 1);
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String buildAllow(Route[] routes) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (HttpMethod m : HttpMethod.values()) {
+            if (routes[m.ordinal()] != null) {
+                joiner.add(m.name());
+            }
+        }
+        return joiner.toString();
+    }
+
+    /** Узел дерева маршрутов */
+    private static final class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        final Route[] routes = new Route[METHOD_COUNT];
+        Node param;
+        String paramName;
+        ParamType paramType;
+        /** Готовое значение заголовка Allow; null — в узле нет обработчиков */
+        String allow;
+    }
+
+    /** Обработчик маршрута со своими фильтрами */
+    private static final class Route {
+        final String name;
+        final HttpHandler handler;
+        final List<Filter> filters;
+
+        Route(String name, HttpHandler handler, List<Filter> filters) {
+            this.name = name;
+            this.handler = handler;
+            this.filters = filters;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /** Типы параметров пути */
+    private enum ParamType {
+        STRING,
+        LONG;
+
+        static ParamType parse(String type) {
+            switch (type) {
+                case "long":
+                    return LONG;
+                case "string":
+                    return STRING;
+                default:
+                    throw new IllegalArgumentException("Unsupported path parameter type: " + type);
+            }
+        }
+
+        /** @return приведённое значение или null, если сегмент не подходит по типу */
+        Object convert(String segment) {
+            if (this == STRING) {
+                return segment;
+            }
+            try {
+                return Long.valueOf(segment);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /** Накопитель параметров пути во время поиска */
+    private static final class Match {
+        private final Object[] values;
+        private String[] names;
+        int count;
+
+        Match(Object[] values) {
+            this.values = values;
+        }
+
+        void set(int index, String name, Object value) {
+            if (names == null) {
+                names = new String[values.length];
+            }
+            names[index] = name;
+            values[index] = value;
+        }
+
+        String[] names() {
+            return count == names.length ? names : Arrays.copyOf(names, count);
+        }
+
+        Object[] values(Object[] all) {
+            return count == all.length ? all : Arrays.copyOf(all, count);
+        }
+    }
+}
@@ -1,72 +1,126 @@
 package otpservice.api;
 
-import com.sun.net.httpserver.HttpServer;
-import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpHandler;
 import otpservice.model.UserRole;
+import otpservice.util.AdaptiveConcurrencyLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 /**
- * Dispatcher отвечает за регистрацию HTTP-контекстов (маршрутов) и их привязку к методам контроллеров.
+ * Dispatcher отвечает за построение таблицы маршрутов ({@link RouteTable}) и их привязку к методам контроллеров.
  * <p>
  * Список маршрутов:
  * <ul>
  *   <li>POST   /register           → AuthController.handleRegister()  (публичный)</li>
  *   <li>POST   /login              → AuthController.handleLogin()     (публичный)</li>
- *   <li>POST   /otp/generate       → UserController.generateOtp()     (роль USER)</li>
- *   <li>POST   /otp/validate       → UserController.validateOtp()     (роль USER)</li>
+ *   <li>POST   /token/refresh      → AuthController.handleRefresh()   (публичный)</li>
+ *   <li>GET    /operations         → UserOperationController.getOperations()    (роль USER)</li>
+ *   <li>POST   /operation/perform  → UserOperationController.performOperation() (роль USER)</li>
+ *   <li>PATCH  /operation/confirm  → UserOperationController.confirmOperation() (роль USER)</li>
  *   <li>PATCH  /admin/config       → AdminController.updateOtpConfig() (роль ADMIN)</li>
  *   <li>GET    /admin/users        → AdminController.listUsers()       (роль ADMIN)</li>
  *   <li>DELETE /admin/users/{id}   → AdminController.deleteUser()      (роль ADMIN)</li>
+ *   <li>POST   /admin/operations   → AdminController.addOperation()    (роль ADMIN)</li>
+ *   <li>PATCH  /admin/operations/{number} → AdminController.updateOperation() (роль ADMIN)</li>
+ *   <li>GET    /admin/limits       → AdminController.listLimits()      (роль ADMIN)</li>
+ *   <li>GET    /admin/sessions     → AdminController.sessionStats()    (роль ADMIN)</li>
+ *   <li>GET    /admin/hashing      → AdminController.hashingStats()    (роль ADMIN)</li>
+ *   <li>GET    /admin/ratelimits   → AdminController.listRateLimits()  (роль ADMIN)</li>
+ *   <li>GET    /admin/usercache    → AdminController.userCacheStats()  (роль ADMIN)</li>
+ *   <li>GET    /admin/otp          → AdminController.otpStats()        (роль ADMIN)</li>
  * </ul>
+ * Каждый маршрут защищён ограничением частоты запросов по адресу клиента
+ * ({@link RateLimitFilter}, первым в цепочке, {@code ratelimit.client.<путь>}),
+ * адаптивным ограничителем одновременных запросов ({@link ConcurrencyLimitFilter})
+ * и ограничением размера тела запроса ({@link RequestSizeLimitFilter}):
+ * {@code request.maxBodyBytes.<путь>} или {@code request.maxBodyBytes.default}.
+ * Закрытые маршруты после аутентификации ограничиваются и по id пользователя
+ * ({@code ratelimit.user.<путь>}). Ответы 404 и 405 формирует таблица маршрутов.
  * </p>
  */
 public class RoutesDispatcher {
-    private final AuthController authController = new AuthController();
-    private final AdminController adminController = new AdminController();
-    private final UserOperationController userOperationController = new UserOperationController();
+    private final AuthController authController;
+    private final AdminController adminController;
+    private final UserOperationController userOperationController;
+    private final AdaptiveConcurrencyLimiter.Settings limiterSettings;
+    private final Properties config;
 
     /**
-     * Регистрация всех маршрутов и подключение фильтров аутентификации.
+     * @param config параметры из application.properties
+     */
+    public RoutesDispatcher(Properties config,
+                            AuthController authController,
+                            AdminController adminController,
+                            UserOperationController userOperationController) {
+        this.authController = authController;
+        this.adminController = adminController;
+        this.userOperationController = userOperationController;
+        this.limiterSettings = AdaptiveConcurrencyLimiter.Settings.fromProperties(config);
+        this.config = config;
+    }
+
+    /**
+     * Построение таблицы маршрутов с фильтрами. Таблица — единственный обработчик
+     * запросов для любого транспорта ({@link HttpTransport}).
      *
-     * @param server экземпляр HttpServer
+     * @return обработчик всех запросов
      */
-    public void registerRoutes(HttpServer server) {
+    public HttpHandler buildRoutes() {
+        RouteTable routes = new RouteTable();
+
         // Публичные маршруты
-        server.createContext("/register", authController::handleRegister);
-        server.createContext("/login",    authController::handleLogin);
+        route(routes, HttpMethod.POST, "/register", authController::handleRegister, null);
+        route(routes, HttpMethod.POST, "/login",    authController::handleLogin,    null);
+        route(routes, HttpMethod.POST, "/token/refresh", authController::handleRefresh, null);
 
         // Маршруты для пользователей (роль USER)
+        route(routes, HttpMethod.GET,   "/operations",        userOperationController::getOperations,    UserRole.USER);
+        route(routes, HttpMethod.POST,  "/operation/perform", userOperationController::performOperation, UserRole.USER);
+        route(routes, HttpMethod.PATCH, "/operation/confirm", userOperationController::confirmOperation, UserRole.USER);
 
-//        HttpContext genCtx = server.createContext("/otp/generate", userController::generateOtp);
-//        genCtx.getFilters().add(new AuthFilter(UserRole.USER));
-//        HttpContext valCtx = server.createContext("/otp/validate", userController::validateOtp);
-//        valCtx.getFilters().add(new AuthFilter(UserRole.USER));
-
-//        HttpContext generateOperationOTPCtx = server.createContext("/otpservice/generateOperationOTP", userController::generateOperationOTP);
-//        generateOperationOTPCtx.getFilters().add(new AuthFilter(UserRole.USER));
-//        HttpContext validateOperationOTPCtx = server.createContext("/otpservice/validateOperationOTP", userController::validateOperationOTP);
-//        validateOperationOTPCtx.getFilters().add(new AuthFilter(UserRole.USER));
-
-        HttpContext operationsCtx = server.createContext("/operations", userOperationController::getOperations);
-        operationsCtx.getFilters().add(new AuthFilter(UserRole.USER));
-        HttpContext performOperationCtx = server.createContext("/operation/perform", userOperationController::performOperation);
-        performOperationCtx.getFilters().add(new AuthFilter(UserRole.USER));
-        HttpContext confirmOperationCtx = server.createContext("/operation/confirm", userOperationController::confirmOperation);
-        confirmOperationCtx.getFilters().add(new AuthFilter(UserRole.USER));
+        // Маршруты для администратора (роль ADMIN)
+        route(routes, HttpMethod.PATCH,  "/admin/config",          adminController::updateOtpConfig, UserRole.ADMIN);
+        route(routes, HttpMethod.GET,    "/admin/users",           adminController::listUsers,       UserRole.ADMIN);
+        route(routes, HttpMethod.DELETE, "/admin/users/{id:long}", adminController::deleteUser,      UserRole.ADMIN);
+        route(routes, HttpMethod.POST,   "/admin/operations",      adminController::addOperation,    UserRole.ADMIN);
+        route(routes, HttpMethod.PATCH,  "/admin/operations/{number:long}", adminController::updateOperation, UserRole.ADMIN);
+        route(routes, HttpMethod.GET,    "/admin/limits",          adminController::listLimits,      UserRole.ADMIN);
+        route(routes, HttpMethod.GET,    "/admin/sessions",        adminController::sessionStats,    UserRole.ADMIN);
+        route(routes, HttpMethod.GET,    "/admin/hashing",         adminController::hashingStats,    UserRole.ADMIN);
+        route(routes, HttpMethod.GET,    "/admin/ratelimits",      adminController::listRateLimits,  UserRole.ADMIN);
+        route(routes, HttpMethod.GET,    "/admin/usercache",       adminController::userCacheStats,  UserRole.ADMIN);
+        route(routes, HttpMethod.GET,    "/admin/otp",             adminController::otpStats,        UserRole.ADMIN);
 
+        return routes;
+    }
 
-        // Маршруты для администратора (роль ADMIN)
-        HttpContext configCtx = server.createContext("/admin/config", adminController::updateOtpConfig);
-        configCtx.getFilters().add(new AuthFilter(UserRole.ADMIN));
-        HttpContext usersCtx = server.createContext("/admin/users", exchange -> {
-            String method = exchange.getRequestMethod();
-            if ("GET".equalsIgnoreCase(method)) {
-                adminController.listUsers(exchange);
-            } else if ("DELETE".equalsIgnoreCase(method)) {
-                adminController.deleteUser(exchange);
-            } else {
-                exchange.sendResponseHeaders(405, -1);
+    /**
+     * Регистрирует маршрут с цепочкой фильтров: частота запросов клиента, ограничитель
+     * одновременных запросов, ограничение размера тела (до аутентификации) и, для закрытых
+     * маршрутов, AuthFilter и частота запросов пользователя.
+     *
+     * @param requiredRole минимальная роль или null для публичного маршрута
+     */
+    private void route(RouteTable routes, HttpMethod method, String pattern, HttpHandler handler, UserRole requiredRole) {
+        List<Filter> filters = new ArrayList<>();
+        RateLimitFilter clientRateLimit = RateLimitFilter.forClient(config, pattern);
+        if (clientRateLimit != null) {
+            filters.add(clientRateLimit);
+        }
+        filters.add(new ConcurrencyLimitFilter(pattern, limiterSettings));
+        long maxBodyBytes = Long.parseLong(config.getProperty("request.maxBodyBytes." + pattern,
+                config.getProperty("request.maxBodyBytes.default", "16384")));
+        filters.add(new RequestSizeLimitFilter(pattern, maxBodyBytes));
+        if (requiredRole != null) {
+            filters.add(new AuthFilter(requiredRole));
+            RateLimitFilter userRateLimit = RateLimitFilter.forUser(config, pattern);
+            if (userRateLimit != null) {
+                filters.add(userRateLimit);
             }
-        });
-        usersCtx.getFilters().add(new AuthFilter(UserRole.ADMIN));
+        }
+        routes.add(method, pattern, handler, filters);
     }
 }
@@ -4,47 +4,47 @@ package otpservice.api;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import com.sun.net.httpserver.HttpExchange;
-import otpservice.dao.impl.OperationDaoImpl;
-import otpservice.dao.impl.OtpCodeDaoImpl;
-import otpservice.dao.impl.OtpConfigDaoImpl;
-import otpservice.dao.impl.UserDaoImpl;
-import otpservice.model.Operation;
 import otpservice.model.User;
+import otpservice.service.OperationCatalogCache;
+import otpservice.service.SendBudgetExceededException;
 import otpservice.service.UserOperationService;
-import otpservice.service.OtpService;
 import otpservice.service.notification.NotificationChannel;
-import otpservice.service.notification.NotificationServiceFactory;
 import otpservice.util.HttpUtils;
 import otpservice.util.JsonUtil;
+import otpservice.util.PayloadTooLargeException;
 
 import java.io.IOException;
-import java.util.List;
 
 public class UserOperationController {
 
-//    private final OtpService otpService = new OtpService(
-//            new OtpCodeDaoImpl(),
-//            new OtpConfigDaoImpl(),
-//            new UserDaoImpl(),
-//            new NotificationServiceFactory(),
-//            new OperationDaoImpl()
-//    );
+    private final UserOperationService userOperationService;
 
-    private final UserOperationService userOperationService = new UserOperationService(
-            new OperationDaoImpl(),
-            new OtpCodeDaoImpl(),
-            new UserDaoImpl()
-    );
+    /** Готовый JSON каталога операций с ETag */
+    private final OperationCatalogCache operationCatalogCache;
 
+    public UserOperationController(UserOperationService userOperationService,
+                                   OperationCatalogCache operationCatalogCache) {
+        this.userOperationService = userOperationService;
+        this.operationCatalogCache = operationCatalogCache;
+    }
+
+    /**
+     * GET /operations — каталог операций.
+     * <ul>
+     *   <li>200 OK — JSON-массив операций с заголовком ETag</li>
+     *   <li>304 Not Modified — если If-None-Match совпадает с текущим ETag</li>
+     * </ul>
+     */
     public void getOperations(HttpExchange exchange) throws IOException {
-        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
-            HttpUtils.sendError(exchange, 405, "Method Not Allowed");
-            return;
-        }
         try {
-            List<Operation> operations = userOperationService.getAllOperations();
-            String json = JsonUtil.toJson(operations);
-            HttpUtils.sendJsonResponse(exchange, 200, json);
+            OperationCatalogCache.Snapshot catalog = operationCatalogCache.get();
+            exchange.getResponseHeaders().set("ETag", catalog.getEtag());
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            if (catalog.matches(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                HttpUtils.sendNotModified(exchange, catalog.getBody().length);
+                return;
+            }
+            HttpUtils.sendJsonBytes(exchange, 200, catalog.getBody());
         } catch (Exception e) {
             HttpUtils.sendError(exchange, 500, "Internal server error");
         }
@@ -52,10 +52,6 @@ public class UserOperationController {
 
 
     public void performOperation(HttpExchange exchange) throws IOException {
-        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
-            HttpUtils.sendError(exchange, 405, "Method Not Allowed");
-            return;
-        }
         String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
         if (contentType == null || !contentType.contains("application/json")) {
             HttpUtils.sendError(exchange, 415, "Content-Type must be application/json");
@@ -80,8 +76,13 @@ public class UserOperationController {
             HttpUtils.sendEmptyResponse(exchange, 202);
 
 
+        } catch (SendBudgetExceededException e) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            HttpUtils.sendError(exchange, 429, "OTP send limit exceeded, retry later");
         } catch (IllegalArgumentException e) {
             HttpUtils.sendError(exchange, 400, e.getMessage());
+        } catch (PayloadTooLargeException e) {
+            throw e; // ответ 413 формирует RequestSizeLimitFilter
         } catch (Exception e) {
             System.out.println("Internal server error: " + e.getMessage());
             HttpUtils.sendError(exchange, 500, "Internal server error");
@@ -89,10 +90,6 @@ public class UserOperationController {
     }
 
     public void confirmOperation(HttpExchange exchange) throws IOException {
-        if (!"PATCH".equalsIgnoreCase(exchange.getRequestMethod())) {
-            HttpUtils.sendError(exchange, 405, "Method Not Allowed");
-            return;
-        }
         String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
         if (contentType == null || !contentType.contains("application/json")) {
             HttpUtils.sendError(exchange, 415, "Content-Type must be application/json");
@@ -111,11 +108,9 @@ public class UserOperationController {
             Long exchangeUserIdAttr = (Long) exchange.getAttribute("userId");
 //            String channel = requestRootNode.get("channel").asText();
 
-//            boolean valid = otpService.validateOtp(req.code);
-
-            if (userOperationService.validateCode(inputCode)) {
-                response = userOperationService.completeOperation(inputCode, requestRootNode, exchange);
-//                HttpUtils.sendEmptyResponse(exchange, 200);
+            // Проверка и погашение кода — один запрос UPDATE ... RETURNING
+            response = userOperationService.completeOperation(exchangeUserIdAttr, inputCode, requestRootNode);
+            if (response != null) {
                 HttpUtils.sendJsonResponse(exchange, 200, response);
             } else {
                 HttpUtils.sendError(exchange, 400, "Invalid or expired code");
@@ -123,6 +118,8 @@ public class UserOperationController {
 
         } catch (IllegalArgumentException e) {
             HttpUtils.sendError(exchange, 400, e.getMessage());
+        } catch (PayloadTooLargeException e) {
+            throw e; // ответ 413 формирует RequestSizeLimitFilter
         } catch (Exception e) {
             System.out.println("Internal server error: " + e.getMessage());
             HttpUtils.sendError(exchange, 500, "Internal server error");
@@ -0,0 +1,119 @@
+package otpservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фабрика исполнителей (Executor) для встроенного HttpServer.
+ * <p>
+ * Режим задаётся параметром {@code server.executor.mode} в application.properties:
+ * <ul>
+ *   <li>{@code virtual} — виртуальный поток на каждый запрос (по умолчанию)</li>
+ *   <li>{@code pool}    — ограниченный пул платформенных потоков
+ *                         ({@code server.executor.poolSize}, {@code server.executor.queueSize});
+ *                         при переполнении очереди выбрасывается RejectedExecutionException,
+ *                         и транспорт отвечает 503</li>
+ *   <li>{@code single}  — прежний режим: все запросы на единственном потоке-диспетчере</li>
+ * </ul>
+ * </p>
+ */
+public final class ServerExecutorFactory {
+    private static final Logger logger = LoggerFactory.getLogger(ServerExecutorFactory.class);
+
+    /** Режимы исполнения обработчиков HTTP-запросов */
+    public enum Mode {
+        VIRTUAL,
+        POOL,
+        SINGLE
+    }
+
+    private ServerExecutorFactory() { /* запрет создания экземпляров */ }
+
+    /**
+     * Определяет режим исполнения по настройкам приложения.
+     * @param config параметры из application.properties
+     * @return выбранный режим
+     * @throws IllegalArgumentException если режим указан неверно
+     */
+    public static Mode resolveMode(Properties config) {
+        String value = config.getProperty("server.executor.mode", "virtual").trim();
+        try {
+            return Mode.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported server.executor.mode: " + value, e);
+        }
+    }
+
+    /**
+     * Создаёт исполнитель для HttpServer.setExecutor().
+     * @param config параметры из application.properties
+     * @return ExecutorService или null для режима SINGLE (поток-диспетчер самого сервера)
+     */
+    public static ExecutorService create(Properties config) {
+        Mode mode = resolveMode(config);
+        switch (mode) {
+            case VIRTUAL:
+                logger.info("HTTP executor: virtual thread per request");
+                return Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("http-vt-", 0).factory());
+            case POOL:
+                int poolSize = Integer.parseInt(config.getProperty("server.executor.poolSize",
+                        String.valueOf(Runtime.getRuntime().availableProcessors() * 2)));
+                int queueSize = Integer.parseInt(config.getProperty("server.executor.queueSize", "1024"));
+                logger.info("HTTP executor: bounded platform pool, size={}, queue={}", poolSize, queueSize);
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                        poolSize, poolSize,
+                        60L, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(queueSize),
+                        namedFactory("http-worker-"),
+                        // при переполнении очереди запрос отклоняется, а не выполняется потоком-диспетчером:
+                        // иначе диспетчер перестаёт принимать соединения
+                        new ThreadPoolExecutor.AbortPolicy());
+                pool.allowCoreThreadTimeOut(true);
+                return pool;
+            case SINGLE:
+            default:
+                logger.info("HTTP executor: single dispatcher thread");
+                return null;
+        }
+    }
+
+    /**
+     * Останавливает исполнитель, дожидаясь завершения текущих запросов.
+     * @param executor исполнитель (может быть null)
+     * @param timeoutSeconds максимальное время ожидания
+     */
+    public static void shutdown(ExecutorService executor, long timeoutSeconds) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory namedFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
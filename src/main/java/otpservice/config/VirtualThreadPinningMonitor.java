@@ -0,0 +1,107 @@
+package otpservice.config;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Обнаружение закрепления (pinning) виртуальных потоков за платформенным потоком-носителем.
+ * <p>
+ * Подписывается на JFR-событие {@code jdk.VirtualThreadPinned} и классифицирует каждое
+ * событие по стеку вызовов: JDBC (пакет otpservice.dao), каналы уведомлений
+ * (otpservice.service.notification) или прочее. Каждое событие логируется с верхним
+ * кадром нашего кода, счётчики доступны через геттеры.
+ * </p>
+ */
+public class VirtualThreadPinningMonitor implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String DAO_PACKAGE = "otpservice.dao.";
+    private static final String NOTIFICATION_PACKAGE = "otpservice.service.notification.";
+    private static final String APP_PACKAGE = "otpservice.";
+
+    private final RecordingStream stream;
+    private final LongAdder jdbcPinned = new LongAdder();
+    private final LongAdder notificationPinned = new LongAdder();
+    private final LongAdder otherPinned = new LongAdder();
+
+    /**
+     * @param threshold минимальная длительность закрепления, о которой сообщать
+     */
+    public VirtualThreadPinningMonitor(Duration threshold) {
+        this.stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+    }
+
+    /** Запускает асинхронное чтение событий JFR. */
+    public void start() {
+        stream.startAsync();
+        logger.info("Virtual thread pinning monitor started");
+    }
+
+    private void onPinned(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace != null ? stackTrace.getFrames() : List.of();
+        String origin = null;
+        String category = "other";
+        for (RecordedFrame frame : frames) {
+            if (frame.getMethod() == null) {
+                continue;
+            }
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith(DAO_PACKAGE)) {
+                category = "jdbc";
+            } else if (type.startsWith(NOTIFICATION_PACKAGE)) {
+                category = "notification";
+            } else if (!type.startsWith(APP_PACKAGE)) {
+                continue;
+            }
+            origin = type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            break;
+        }
+
+        switch (category) {
+            case "jdbc":
+                jdbcPinned.increment();
+                break;
+            case "notification":
+                notificationPinned.increment();
+                break;
+            default:
+                otherPinned.increment();
+        }
+        logger.warn("Virtual thread pinned for {} ms [{}] at {}",
+                event.getDuration().toMillis(), category, origin != null ? origin : "<jdk>");
+    }
+
+    /** @return число закреплений в JDBC-коде */
+    public long getJdbcPinnedCount() {
+        return jdbcPinned.sum();
+    }
+
+    /** @return число закреплений в коде отправки уведомлений */
+    public long getNotificationPinnedCount() {
+        return notificationPinned.sum();
+    }
+
+    /** @return число прочих закреплений */
+    public long getOtherPinnedCount() {
+        return otherPinned.sum();
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+        logger.info("Virtual thread pinning monitor stopped: jdbc={}, notification={}, other={}",
+                getJdbcPinnedCount(), getNotificationPinnedCount(), getOtherPinnedCount());
+    }
+}
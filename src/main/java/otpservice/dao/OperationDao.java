@@ -8,4 +8,25 @@ public interface OperationDao {
 
     List<Operation> getAllOperations();
     Operation findByNumber(int operationNumber);
+
+    /**
+     * Добавляет операцию.
+     * @param operation номер, название и описание операции
+     * @return сохранённая операция с id
+     * @throws IllegalStateException если операция с таким номером уже существует
+     */
+    Operation create(Operation operation);
+
+    /**
+     * Изменяет название и описание операции с заданным номером.
+     * @return true, если операция найдена и изменена
+     */
+    boolean update(Operation operation);
+
+    /**
+     * Возвращает отпечаток содержимого таблицы operations (md5 по всем строкам).
+     * Меняется при любом изменении каталога операций.
+     * @return hex-строка отпечатка
+     */
+    String fingerprint();
 }
@@ -2,6 +2,7 @@ package otpservice.dao;
 
 import otpservice.model.OtpCode;
 import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -29,12 +30,41 @@ public interface OtpCodeDao {
      */
     List<OtpCode> findAllByUser(Long userId);
 
+    /**
+     * Возвращает активные коды, созданные позже указанного момента (для заполнения индекса при старте).
+     * @param createdAfter граница срока жизни
+     * @return список активных неистёкших кодов
+     */
+    List<OtpCode> findActiveCreatedAfter(LocalDateTime createdAfter);
+
     /**
      * Помечает код с заданным id как использованный.
      * @param id идентификатор записи OtpCode
      */
     void markAsUsed(Long id);
 
+    /**
+     * Атомарно погашает код: одним запросом UPDATE ... RETURNING переводит активный код
+     * пользователя, созданный позже {@code createdAfter}, в статус USED.
+     * Если у пользователя несколько активных кодов с теми же цифрами, гасится только самый
+     * свежий. Из нескольких одновременных вызовов с одним кодом успешен ровно один.
+     * @param code         строка кода
+     * @param userId       владелец кода
+     * @param createdAfter граница срока жизни: более старые коды считаются просроченными
+     * @return погашенный код (со статусом USED) или null, если код не найден, чужой, уже использован или просрочен
+     */
+    OtpCode consume(String code, Long userId, LocalDateTime createdAfter);
+
+    /**
+     * Помечает активные коды с указанными id как просроченные одним запросом
+     * ({@code UPDATE ... WHERE id = ANY(?)}). Уже использованные коды и коды, созданные позже
+     * {@code createdBefore} (срок продлён изменением TTL), не затрагиваются.
+     * @param ids           идентификаторы записей OtpCode
+     * @param createdBefore граница текущего TTL: помечаются коды, созданные не позже
+     * @return число изменённых записей
+     */
+    int markAsExpired(long[] ids, LocalDateTime createdBefore);
+
     /**
      * Помечает все коды старше указанного TTL как просроченные.
      * @param ttl время жизни кода (Duration), все коды с createdAt + ttl &lt; now() станут EXPIRED
@@ -15,7 +15,13 @@ public interface OtpConfigDao {
     OtpConfig getConfig();
 
     /**
-     * Обновляет существующую конфигурацию OTP (length, ttlSeconds).
+     * Возвращает версию конфигурации — дешёвая проверка, изменилась ли запись.
+     * @return версия или -1, если запись отсутствует
+     */
+    long getVersion();
+
+    /**
+     * Обновляет существующую конфигурацию OTP (length, ttlSeconds) и увеличивает её версию.
      * @param config объект OtpConfig с новыми значениями
      */
     void updateConfig(OtpConfig config);
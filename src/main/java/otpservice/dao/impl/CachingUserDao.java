@@ -0,0 +1,256 @@
+package otpservice.dao.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.dao.UserDao;
+import otpservice.model.User;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Кэширующая обёртка над UserDao: пользователи по id и по логину.
+ * <p>
+ * Записи живут {@code users.cache.ttlSeconds}; размер каждого индекса ограничен
+ * {@code users.cache.maxEntries}. Одновременные промахи по одному ключу объединяются:
+ * загрузку из БД выполняет первый поток, остальные ждут её результата. Отсутствующие
+ * пользователи не кэшируются. Изменения через {@link #create}, {@link #save} и {@link #delete}
+ * удаляют затронутые записи; загрузка, начатая до изменения, свой результат в кэш не кладёт.
+ * Вызывающему возвращается копия объекта, поэтому изменения до {@link #save} кэш не портят.
+ * </p>
+ */
+public class CachingUserDao implements UserDao {
+    private static final Logger logger = LoggerFactory.getLogger(CachingUserDao.class);
+
+    private final UserDao delegate;
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<Long, Entry> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Entry> byUsername = new ConcurrentHashMap<>();
+    /** Счётчик изменений: загрузка, пережившая изменение, не сохраняется */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAccumulator maxLoadNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param delegate   DAO, обращающийся к БД
+     * @param ttlSeconds время жизни записи
+     * @param maxEntries максимальное число записей в каждом индексе
+     */
+    public CachingUserDao(UserDao delegate, long ttlSeconds, int maxEntries) {
+        this.delegate = delegate;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Оборачивает DAO кэшем по параметрам {@code users.cache.*} из application.properties.
+     * @return кэширующий DAO или исходный, если {@code users.cache.enabled=false}
+     */
+    public static UserDao wrap(UserDao delegate, Properties config) {
+        if (!Boolean.parseBoolean(config.getProperty("users.cache.enabled", "true").trim())) {
+            return delegate;
+        }
+        long ttl = Long.parseLong(config.getProperty("users.cache.ttlSeconds", "60"));
+        int max = Integer.parseInt(config.getProperty("users.cache.maxEntries", "10000"));
+        logger.info("User cache: ttl={}s, maxEntries={}", ttl, max);
+        return new CachingUserDao(delegate, ttl, max);
+    }
+
+    @Override
+    public void create(User user) {
+        generation.incrementAndGet();
+        delegate.create(user);
+        byUsername.remove(user.getUsername());
+    }
+
+    @Override
+    public void save(User user) {
+        generation.incrementAndGet();
+        delegate.save(user);
+        invalidate(user.getId());
+    }
+
+    @Override
+    public User findByUsername(String username) {
+        if (username == null) {
+            return delegate.findByUsername(null);
+        }
+        return copy(lookup(byUsername, username, () -> delegate.findByUsername(username)));
+    }
+
+    @Override
+    public User findById(Long id) {
+        if (id == null) {
+            return delegate.findById(null);
+        }
+        return copy(lookup(byId, id, () -> delegate.findById(id)));
+    }
+
+    @Override
+    public List<User> findAllUsersWithoutAdmins() {
+        return delegate.findAllUsersWithoutAdmins();
+    }
+
+    @Override
+    public boolean adminExists() {
+        return delegate.adminExists();
+    }
+
+    @Override
+    public void delete(Long userId) {
+        generation.incrementAndGet();
+        delegate.delete(userId);
+        invalidate(userId);
+    }
+
+    /**
+     * Удаляет из кэша все записи пользователя.
+     */
+    public void invalidate(Long userId) {
+        generation.incrementAndGet();
+        if (userId == null) {
+            return;
+        }
+        byId.remove(userId);
+        byUsername.values().removeIf(entry -> {
+            User cached = entry.future.getNow(null);
+            return cached != null && userId.equals(cached.getId());
+        });
+    }
+
+    /**
+     * Сводка для администратора: размер, доля попаданий, время загрузки.
+     */
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long loads = missCount - loadFailures.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("byId", byId.size());
+        stats.put("byUsername", byUsername.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("coalesced", coalesced.sum());
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("loadAvgMs", loads <= 0 ? 0.0 : loadNanos.sum() / 1_000_000.0 / loads);
+        stats.put("loadMaxMs", maxLoadNanos.get() / 1_000_000.0);
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private <K> User lookup(ConcurrentHashMap<K, Entry> map, K key, Supplier<User> loader) {
+        while (true) {
+            long now = System.nanoTime();
+            Entry entry = map.get(key);
+            if (entry != null) {
+                if (now - entry.createdAt < ttlNanos) {
+                    hits.increment();
+                    if (!entry.future.isDone()) {
+                        coalesced.increment();
+                    }
+                    return join(entry);
+                }
+                map.remove(key, entry);
+                continue;
+            }
+            Entry fresh = new Entry(now);
+            if (map.putIfAbsent(key, fresh) != null) {
+                continue;
+            }
+            misses.increment();
+            return load(map, key, fresh, loader);
+        }
+    }
+
+    private <K> User load(ConcurrentHashMap<K, Entry> map, K key, Entry entry, Supplier<User> loader) {
+        long startGeneration = generation.get();
+        long start = System.nanoTime();
+        User user;
+        try {
+            user = loader.get();
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            map.remove(key, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        loadNanos.add(elapsed);
+        maxLoadNanos.accumulate(elapsed);
+        entry.future.complete(user);
+        if (user == null || generation.get() != startGeneration) {
+            map.remove(key, entry);
+        } else if (map.size() > maxEntries) {
+            trim(map);
+        }
+        return user;
+    }
+
+    /** Удаляет просроченные записи, а если их недостаточно — произвольные до 90% лимита */
+    private <K> void trim(ConcurrentHashMap<K, Entry> map) {
+        long now = System.nanoTime();
+        int target = maxEntries - maxEntries / 10;
+        for (Iterator<Entry> it = map.values().iterator(); it.hasNext() && map.size() > target; ) {
+            Entry entry = it.next();
+            if (now - entry.createdAt >= ttlNanos) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+        for (Iterator<Entry> it = map.values().iterator(); it.hasNext() && map.size() > target; ) {
+            Entry entry = it.next();
+            if (entry.future.isDone()) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static User join(Entry entry) {
+        try {
+            return entry.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static User copy(User user) {
+        return user == null ? null
+                : new User(user.getId(), user.getUsername(), user.getPasswordHash(), user.getEmail(), user.getRole());
+    }
+
+    /** Запись кэша: результат (или ожидаемый результат) загрузки и момент её начала */
+    private static final class Entry {
+        final CompletableFuture<User> future = new CompletableFuture<>();
+        final long createdAt;
+
+        Entry(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+}
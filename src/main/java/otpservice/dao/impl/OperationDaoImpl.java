@@ -23,6 +23,15 @@ public class OperationDaoImpl implements OperationDao {
             "SELECT * FROM operations";
     private static final String SELECT_BY_NUMBER_SQL =
             "SELECT * FROM operations WHERE number = ?";
+    private static final String INSERT_OPERATION_SQL =
+            "INSERT INTO operations (number, name, description) VALUES (?, ?, ?) RETURNING id";
+    private static final String UPDATE_OPERATION_SQL =
+            "UPDATE operations SET name = ?, description = ? WHERE number = ?";
+    /** SQLSTATE нарушения уникальности в PostgreSQL */
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final String SELECT_FINGERPRINT_SQL =
+            "SELECT md5(coalesce(string_agg(id || ':' || number || ':' || name || ':' || coalesce(description, ''), "
+                    + "'|' ORDER BY id), '')) FROM operations";
 
     @Override
     public Operation findByNumber(int operationNumber) {
@@ -32,7 +41,7 @@ public class OperationDaoImpl implements OperationDao {
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     Operation found = mapRow(rs);
-                    logger.info("Found operation by number {}: {}", operationNumber, found);
+                    logger.debug("Found operation by number {}: {}", operationNumber, found);
                     return found;
                 }
             }
@@ -60,6 +69,57 @@ public class OperationDaoImpl implements OperationDao {
         return operations;
     }
 
+    @Override
+    public Operation create(Operation operation) {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT_OPERATION_SQL)) {
+            ps.setInt(1, operation.getNumber());
+            ps.setString(2, operation.getName());
+            ps.setString(3, operation.getDescription());
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                operation.setId(rs.getLong(1));
+            }
+            logger.info("Created operation: {}", operation);
+            return operation;
+        } catch (SQLException e) {
+            if (UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                throw new IllegalStateException("Operation number already exists");
+            }
+            logger.error("Error creating operation [{}]: {}", operation, e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean update(Operation operation) {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPDATE_OPERATION_SQL)) {
+            ps.setString(1, operation.getName());
+            ps.setString(2, operation.getDescription());
+            ps.setInt(3, operation.getNumber());
+            int affected = ps.executeUpdate();
+            logger.info("Updated operation {} ({} rows)", operation.getNumber(), affected);
+            return affected > 0;
+        } catch (SQLException e) {
+            logger.error("Error updating operation [{}]: {}", operation, e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String fingerprint() {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_FINGERPRINT_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getString(1);
+        } catch (SQLException e) {
+            logger.error("Error computing operations fingerprint: {}", e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Вспомогательный метод для маппинга строки ResultSet в объект User.
      */
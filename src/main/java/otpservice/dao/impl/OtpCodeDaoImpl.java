@@ -26,8 +26,20 @@ public class OtpCodeDaoImpl implements OtpCodeDao {
             "SELECT id, user_id, operation_number, code, status, created_at FROM codes WHERE code = ?";
     private static final String SELECT_BY_USER_SQL =
             "SELECT id, user_id, operation_number, code, status, created_at FROM codes WHERE user_id = ?";
+    private static final String SELECT_ACTIVE_SQL =
+            "SELECT id, user_id, operation_number, code, status, created_at FROM codes "
+                    + "WHERE status = 'ACTIVE' AND created_at > ?";
     private static final String UPDATE_MARK_USED_SQL =
             "UPDATE codes SET status = 'USED' WHERE id = ?";
+    // У пользователя может быть несколько активных кодов с одинаковыми цифрами (разные операции):
+    // гасится ровно одна запись — самая свежая
+    private static final String CONSUME_SQL =
+            "UPDATE codes SET status = 'USED' WHERE status = 'ACTIVE' AND id = ("
+                    + "SELECT id FROM codes WHERE code = ? AND user_id = ? AND status = 'ACTIVE' AND created_at > ? "
+                    + "ORDER BY created_at DESC, id DESC LIMIT 1 FOR UPDATE) "
+                    + "RETURNING id, user_id, operation_number, code, status, created_at";
+    private static final String UPDATE_MARK_EXPIRED_BY_ID_SQL =
+            "UPDATE codes SET status = 'EXPIRED' WHERE status = 'ACTIVE' AND id = ANY(?) AND created_at <= ?";
     private static final String UPDATE_MARK_EXPIRED_SQL =
             "UPDATE codes SET status = 'EXPIRED' WHERE status = 'ACTIVE' AND created_at < ?";
     private static final String DELETE_BY_USER_SQL =
@@ -100,6 +112,26 @@ public class OtpCodeDaoImpl implements OtpCodeDao {
         return list;
     }
 
+    @Override
+    public List<OtpCode> findActiveCreatedAfter(LocalDateTime createdAfter) {
+        List<OtpCode> list = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_ACTIVE_SQL)) {
+            ps.setTimestamp(1, Timestamp.valueOf(createdAfter));
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRow(rs));
+                }
+            }
+            logger.info("Found {} active OTP codes created after {}", list.size(), createdAfter);
+        } catch (SQLException e) {
+            logger.error("Error loading active OTP codes: {}", e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+        return list;
+    }
+
     @Override
     public void markAsUsed(Long id) {
         try (Connection conn = DatabaseManager.getConnection();
@@ -113,6 +145,51 @@ public class OtpCodeDaoImpl implements OtpCodeDao {
         }
     }
 
+    @Override
+    public OtpCode consume(String code, Long userId, LocalDateTime createdAfter) {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(CONSUME_SQL)) {
+            ps.setString(1, code);
+            ps.setLong(2, userId);
+            ps.setTimestamp(3, Timestamp.valueOf(createdAfter));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    OtpCode consumed = mapRow(rs);
+                    logger.info("Consumed OTP id {} of user {}", consumed.getId(), userId);
+                    return consumed;
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error consuming OTP of user [{}]: {}", userId, e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
+
+    @Override
+    public int markAsExpired(long[] ids, LocalDateTime createdBefore) {
+        Long[] boxed = new Long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            boxed[i] = ids[i];
+        }
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPDATE_MARK_EXPIRED_BY_ID_SQL)) {
+            Array array = conn.createArrayOf("bigint", boxed);
+            try {
+                ps.setArray(1, array);
+                ps.setTimestamp(2, Timestamp.valueOf(createdBefore));
+                int affected = ps.executeUpdate();
+                logger.debug("Marked {} of {} OTP codes as EXPIRED", affected, ids.length);
+                return affected;
+            } finally {
+                array.free();
+            }
+        } catch (SQLException e) {
+            logger.error("Error marking {} OTP codes as EXPIRED: {}", ids.length, e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public void markAsExpiredOlderThan(Duration ttl) {
         LocalDateTime threshold = LocalDateTime.now().minus(ttl);
@@ -16,9 +16,11 @@ public class OtpConfigDaoImpl implements OtpConfigDao {
     private static final Logger logger = LoggerFactory.getLogger(OtpConfigDaoImpl.class);
 
     private static final String SELECT_CONFIG_SQL =
-            "SELECT id, length, ttl_seconds FROM config LIMIT 1";
+            "SELECT id, length, ttl_seconds, version FROM config LIMIT 1";
+    private static final String SELECT_VERSION_SQL =
+            "SELECT version FROM config LIMIT 1";
     private static final String UPDATE_CONFIG_SQL =
-            "UPDATE config SET length = ?, ttl_seconds = ? WHERE id = ?";
+            "UPDATE config SET length = ?, ttl_seconds = ?, version = version + 1 WHERE id = ?";
     private static final String INSERT_DEFAULT_SQL =
             "INSERT INTO config (length, ttl_seconds) VALUES (?, ?)";
 
@@ -33,6 +35,7 @@ public class OtpConfigDaoImpl implements OtpConfigDao {
                 cfg.setId(rs.getLong("id"));
                 cfg.setLength(rs.getInt("length"));
                 cfg.setTtlSeconds(rs.getInt("ttl_seconds"));
+                cfg.setVersion(rs.getLong("version"));
                 logger.info("Loaded OTP config: {}", cfg);
                 return cfg;
             }
@@ -44,6 +47,18 @@ public class OtpConfigDaoImpl implements OtpConfigDao {
         return null;
     }
 
+    @Override
+    public long getVersion() {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_VERSION_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : -1;
+        } catch (SQLException e) {
+            logger.error("Error loading OTP config version: {}", e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public void updateConfig(OtpConfig config) {
         try (Connection conn = DatabaseManager.getConnection();
@@ -0,0 +1,119 @@
+package otpservice.main;
+
+import otpservice.api.AdminController;
+import otpservice.api.AuthController;
+import otpservice.api.UserOperationController;
+import otpservice.dao.OperationDao;
+import otpservice.dao.OtpCodeDao;
+import otpservice.dao.OtpConfigDao;
+import otpservice.dao.UserDao;
+import otpservice.dao.impl.OperationDaoImpl;
+import otpservice.dao.impl.OtpCodeDaoImpl;
+import otpservice.dao.impl.OtpConfigDaoImpl;
+import otpservice.dao.impl.CachingUserDao;
+import otpservice.dao.impl.UserDaoImpl;
+import otpservice.service.ActiveOtpIndex;
+import otpservice.service.AdminService;
+import otpservice.service.OperationCatalogCache;
+import otpservice.service.OtpConfigCache;
+import otpservice.service.OtpExpiryEngine;
+import otpservice.service.OtpSendBudget;
+import otpservice.service.OtpService;
+import otpservice.service.UserOperationService;
+import otpservice.service.UserService;
+import otpservice.service.notification.NotificationServiceFactory;
+import otpservice.util.PasswordHashingExecutor;
+
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Корень композиции приложения.
+ * <p>
+ * Создаёт при старте ровно по одному экземпляру каждого DAO, сервиса и контроллера
+ * и связывает их через конструкторы. Каналы уведомлений создаются лениво
+ * фабрикой {@link NotificationServiceFactory} при первой отправке.
+ * </p>
+ */
+public class AppContext {
+    private final Properties config;
+
+    private final UserDao userDao;
+    private final OtpCodeDao otpCodeDao = new OtpCodeDaoImpl();
+    private final OtpConfigDao otpConfigDao = new OtpConfigDaoImpl();
+    private final OperationDao operationDao = new OperationDaoImpl();
+
+    private final NotificationServiceFactory notificationFactory = new NotificationServiceFactory();
+    private final PasswordHashingExecutor passwordHashing;
+
+    private final OtpConfigCache otpConfigCache;
+    private final OtpService otpService;
+    private final OtpExpiryEngine otpExpiryEngine;
+    private final AdminService adminService;
+    private final UserService userService;
+    private final UserOperationService userOperationService;
+    private final OperationCatalogCache operationCatalogCache;
+
+    private final AuthController authController;
+    private final AdminController adminController;
+    private final UserOperationController userOperationController;
+
+    /**
+     * @param config параметры из application.properties
+     */
+    public AppContext(Properties config) {
+        this.config = config;
+        userDao = CachingUserDao.wrap(new UserDaoImpl(), config);
+        passwordHashing = PasswordHashingExecutor.fromProperties(config);
+
+        long configCheckSeconds = Long.parseLong(config.getProperty("otp.config.versionCheckSeconds", "5"));
+        otpConfigCache = new OtpConfigCache(otpConfigDao, Duration.ofSeconds(configCheckSeconds));
+        long revalidateSeconds = Long.parseLong(config.getProperty("operations.cache.revalidateSeconds", "30"));
+        operationCatalogCache = new OperationCatalogCache(operationDao, Duration.ofSeconds(revalidateSeconds));
+        ActiveOtpIndex activeCodes = ActiveOtpIndex.fromProperties(config);
+        otpExpiryEngine = OtpExpiryEngine.fromProperties(otpCodeDao, otpConfigCache, activeCodes, config);
+        otpService = new OtpService(otpCodeDao, otpConfigCache, userDao, notificationFactory, operationCatalogCache,
+                OtpSendBudget.fromProperties(config), activeCodes, otpExpiryEngine);
+        adminService = new AdminService(otpConfigDao, userDao, otpCodeDao, otpConfigCache,
+                operationDao, operationCatalogCache);
+        userService = new UserService(userDao, passwordHashing);
+        userOperationService = new UserOperationService(operationCatalogCache, userDao, otpService);
+
+        authController = new AuthController(userService);
+        adminController = new AdminController(adminService, passwordHashing,
+                userDao instanceof CachingUserDao cache ? cache : null, activeCodes, otpExpiryEngine);
+        userOperationController = new UserOperationController(userOperationService, operationCatalogCache);
+    }
+
+    public Properties getConfig() {
+        return config;
+    }
+
+    public PasswordHashingExecutor getPasswordHashing() {
+        return passwordHashing;
+    }
+
+    public OtpConfigCache getOtpConfigCache() {
+        return otpConfigCache;
+    }
+
+    public OtpService getOtpService() {
+        return otpService;
+    }
+
+    public OtpExpiryEngine getOtpExpiryEngine() {
+        return otpExpiryEngine;
+    }
+
+    public AuthController getAuthController() {
+        return authController;
+    }
+
+    public AdminController getAdminController() {
+        return adminController;
+    }
+
+    public UserOperationController getUserOperationController() {
+        return userOperationController;
+    }
+}
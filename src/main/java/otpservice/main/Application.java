@@ -1,19 +1,20 @@
 package otpservice.main;
 
-import com.sun.net.httpserver.HttpServer;
+import otpservice.api.HttpTransport;
+import otpservice.api.HttpTransportFactory;
 import otpservice.api.RoutesDispatcher;
-import otpservice.dao.impl.OperationDaoImpl;
-import otpservice.dao.impl.OtpCodeDaoImpl;
-import otpservice.dao.impl.OtpConfigDaoImpl;
-import otpservice.dao.impl.UserDaoImpl;
-import otpservice.service.CheckExpirationScheduler;
-import otpservice.service.OtpService;
-import otpservice.service.notification.NotificationServiceFactory;
+import otpservice.config.ServerExecutorFactory;
+import otpservice.config.VirtualThreadPinningMonitor;
+import otpservice.util.JsonUtil;
+import otpservice.util.ResponseCompression;
+import otpservice.util.TokenManager;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Точка входа приложения. Поднимает HTTP-сервер на порту из application.properties
@@ -31,41 +32,65 @@ public class Application {
                 }
             }
             int port = Integer.parseInt(config.getProperty("server.port", "8080"));
-            long schedulerInterval = Long.parseLong(config.getProperty("app.scheduler.interval", "1"));
+            ResponseCompression.configure(config);
+            JsonUtil.configure(config);
+            TokenManager.configure(config);
 
-            // Создаём HTTP-сервер
-            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+            // Исполнитель обработчиков запросов (virtual / pool / single)
+            ServerExecutorFactory.Mode executorMode = ServerExecutorFactory.resolveMode(config);
+            ExecutorService httpExecutor = ServerExecutorFactory.create(config);
+
+            // Отслеживание закрепления виртуальных потоков в JDBC и каналах уведомлений
+            VirtualThreadPinningMonitor pinningMonitor = null;
+            if (executorMode == ServerExecutorFactory.Mode.VIRTUAL
+                    && Boolean.parseBoolean(config.getProperty("server.executor.pinningMonitor", "true"))) {
+                long thresholdMs = Long.parseLong(config.getProperty("server.executor.pinningThresholdMs", "20"));
+                pinningMonitor = new VirtualThreadPinningMonitor(Duration.ofMillis(thresholdMs));
+                pinningMonitor.start();
+            }
+            VirtualThreadPinningMonitor monitor = pinningMonitor;
 
             // Регистрируем маршруты
-            RoutesDispatcher routesDispatcher = new RoutesDispatcher();
-            routesDispatcher.registerRoutes(server);
+            // Единый граф объектов: по одному экземпляру DAO, сервисов и контроллеров
+            AppContext context = new AppContext(config);
+
+            RoutesDispatcher routesDispatcher = new RoutesDispatcher(config,
+                    context.getAuthController(),
+                    context.getAdminController(),
+                    context.getUserOperationController());
 
-            // Создаём и запускаем планировщик
-            OtpService otpService = new OtpService(
-                new OtpCodeDaoImpl(),
-                new OtpConfigDaoImpl(),
-                new UserDaoImpl(),
-                new NotificationServiceFactory(),
-                new OperationDaoImpl()
-            );
+            // Создаём HTTP-транспорт (jdk / nio) с таблицей маршрутов
+            HttpTransport server = HttpTransportFactory.create(config, new InetSocketAddress(port),
+                    routesDispatcher.buildRoutes(), httpExecutor);
 
-            // Запускаем планировщик
-            CheckExpirationScheduler expirationScheduler = new CheckExpirationScheduler(otpService, schedulerInterval);
-            expirationScheduler.start();
-            System.out.println("ExpirationScheduler started, schedulerInterval = " + schedulerInterval);
+            // Проверка версии конфигурации OTP (изменения с других узлов)
+            context.getOtpConfigCache().start();
+
+            // Индекс активных кодов в памяти заполняется из таблицы codes,
+            // их истечение планируется на колесе таймеров
+            context.getOtpService().loadActiveCodes();
+            context.getOtpExpiryEngine().start();
 
             // Регистрируем shutdown hook для остановки планировщика при завершении работы сервера
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                expirationScheduler.stop();
+                context.getOtpExpiryEngine().stop();
+                context.getOtpConfigCache().stop();
                 server.stop(0); // Останавливаем сервер с задержкой 0 секунд
+                ServerExecutorFactory.shutdown(httpExecutor, 5);
+                TokenManager.shutdown();
+                context.getPasswordHashing().close();
+                if (monitor != null) {
+                    monitor.close();
+                }
                 System.out.println("Server and scheduler stopped gracefully.");
             }));
 
             // Запускаем сервер
             server.start();
-            System.out.println("Server started on http://localhost:" + port);
+            System.out.println("Server started on http://localhost:" + port + ", transport = "
+                    + HttpTransportFactory.resolveType(config) + ", executor mode = " + executorMode);
 
-        } catch (IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
             System.err.println("Failed to start server: " + e.getMessage());
             e.printStackTrace();
             System.exit(1);
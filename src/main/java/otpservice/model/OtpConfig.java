@@ -10,6 +10,7 @@ public class OtpConfig {
     private Long id;
     private int length;      // количество символов в коде
     private int ttlSeconds;  // время жизни кода в секундах
+    private long version;    // версия записи, увеличивается при каждом изменении
 
     /**
      * Пустой конструктор для фреймворков и JDBC.
@@ -30,6 +31,16 @@ public class OtpConfig {
         this.ttlSeconds = ttlSeconds;
     }
 
+    /**
+     * Полный конструктор с версией записи.
+     *
+     * @param version версия записи config
+     */
+    public OtpConfig(Long id, int length, int ttlSeconds, long version) {
+        this(id, length, ttlSeconds);
+        this.version = version;
+    }
+
     /**
      * @return уникальный идентификатор конфигурации
      */
@@ -72,6 +83,20 @@ public class OtpConfig {
         this.ttlSeconds = ttlSeconds;
     }
 
+    /**
+     * @return версию записи конфигурации
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param version задаёт версию записи конфигурации
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -94,6 +119,7 @@ public class OtpConfig {
                 "id=" + id +
                 ", length=" + length +
                 ", ttlSeconds=" + ttlSeconds +
+                ", version=" + version +
                 '}';
     }
 }
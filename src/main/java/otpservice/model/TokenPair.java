@@ -0,0 +1,43 @@
+package otpservice.model;
+
+/**
+ * Пара токенов, выдаваемая при логине и обновлении сессии.
+ * Сериализуется в JSON: {"token":"...","refreshToken":"...","expiresIn":1800}.
+ */
+public class TokenPair {
+    private final String token;
+    private final String refreshToken;
+    private final long expiresIn;
+
+    /**
+     * @param token        токен доступа (заголовок Authorization: Bearer)
+     * @param refreshToken одноразовый токен для POST /token/refresh
+     * @param expiresIn    время жизни токена доступа в секундах
+     */
+    public TokenPair(String token, String refreshToken, long expiresIn) {
+        this.token = token;
+        this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
+    }
+
+    /**
+     * @return токен доступа
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return refresh-токен
+     */
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    /**
+     * @return время жизни токена доступа в секундах
+     */
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+}
@@ -0,0 +1,277 @@
+package otpservice.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Индекс активных OTP-кодов в памяти: (id пользователя, код) → id записи и момент создания.
+ * <p>
+ * Записи хранятся в параллельных массивах примитивов с открытой адресацией (линейное
+ * пробирование): код из цифр упаковывается в long вместе с длиной, поэтому ведущие нули
+ * различаются и объекты на запись не создаются. Слот занимает 32 байта.
+ * Коды длиннее {@value #MAX_DIGITS} цифр не индексируются — для них проверка идёт в БД.
+ * </p>
+ * <p>
+ * Индекс заполняется при выдаче кода и при старте из таблицы codes; запись удаляется
+ * после погашения в БД и при истечении TTL. БД остаётся основным хранилищем. Индекс видит
+ * только коды, выданные этим узлом, поэтому отсекать промахи без обращения к БД можно лишь
+ * на единственном узле — это режим по умолчанию. При нескольких узлах с общей БД задаётся
+ * {@code otp.index.authoritative=false}: тогда индекс не экономит запросов к БД.
+ * Методы синхронизированы: каждая операция — несколько обращений к массивам.
+ * </p>
+ */
+public class ActiveOtpIndex {
+    /** Максимальная длина кода: 10^17 &lt; 2^57, длина занимает биты 58..62 */
+    public static final int MAX_DIGITS = 17;
+    /** Результат {@link #find}: код не может быть в индексе, проверять нужно в БД */
+    public static final long NOT_INDEXED = -1;
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] userIds;
+    private long[] codes;
+    /** id записи в БД; {@link #EMPTY} — свободный слот, {@link #TOMBSTONE} — удалённый */
+    private long[] ids;
+    private long[] createdAt;
+    private int mask;
+    private int size;
+    /** Занятые слоты вместе с удалёнными */
+    private int used;
+
+    private final boolean authoritative;
+
+    private long hits;
+    private long misses;
+    private long expired;
+
+    /**
+     * @param expectedCodes ожидаемое число одновременно активных кодов
+     * @param authoritative индекс содержит все активные коды (единственный узел)
+     */
+    public ActiveOtpIndex(int expectedCodes, boolean authoritative) {
+        this.authoritative = authoritative;
+        allocate(tableSizeFor(expectedCodes));
+    }
+
+    /**
+     * Создаёт индекс по параметрам {@code otp.index.*} из application.properties.
+     * По умолчанию индекс полный: сервис рассчитан на один узел.
+     */
+    public static ActiveOtpIndex fromProperties(Properties config) {
+        int expected = Integer.parseInt(config.getProperty("otp.index.expectedCodes", "1024"));
+        boolean authoritative = Boolean.parseBoolean(config.getProperty("otp.index.authoritative", "true").trim());
+        return new ActiveOtpIndex(expected, authoritative);
+    }
+
+    /**
+     * @return true, если промах индекса окончательный и БД можно не проверять
+     */
+    public boolean isAuthoritative() {
+        return authoritative;
+    }
+
+    /**
+     * Упаковывает код из цифр в long: значение и длина.
+     * @return упакованный код или {@link #NOT_INDEXED}, если строка пустая, длиннее
+     *         {@value #MAX_DIGITS} символов или содержит не только цифры
+     */
+    public static long encode(String code) {
+        int length = code == null ? 0 : code.length();
+        if (length == 0 || length > MAX_DIGITS) {
+            return NOT_INDEXED;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = code.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_INDEXED;
+            }
+            value = value * 10 + digit;
+        }
+        return ((long) length << 58) | value;
+    }
+
+    /**
+     * Добавляет активный код.
+     * @param id              id записи в таблице codes (положительный)
+     * @param createdAtMillis момент создания кода, мс от эпохи
+     * @return false, если код не индексируется (см. {@link #encode})
+     */
+    public synchronized boolean add(long id, long userId, String code, long createdAtMillis) {
+        long key = encode(code);
+        if (key == NOT_INDEXED || id <= 0) {
+            return false;
+        }
+        if ((used + 1) * 2 > ids.length) {
+            rehash(tableSizeFor(size + 1));
+        }
+        int slot = slot(userId, key);
+        while (ids[slot] > 0) {
+            slot = (slot + 1) & mask;
+        }
+        if (ids[slot] == EMPTY) {
+            used++;
+        }
+        userIds[slot] = userId;
+        codes[slot] = key;
+        ids[slot] = id;
+        createdAt[slot] = createdAtMillis;
+        size++;
+        return true;
+    }
+
+    /**
+     * Ищет активный код пользователя. Запись остаётся в индексе до {@link #remove}: её удаляют
+     * только после ответа БД, чтобы ошибка БД не теряла действующий код. Одновременные
+     * погашения одного кода разрешает БД. Найденная просроченная запись удаляется сразу.
+     * @param createdAfterMillis граница TTL: коды, созданные не позже, считаются просроченными
+     * @return id записи; 0 — кода нет, он использован или просрочен;
+     *         {@link #NOT_INDEXED} — код не индексируется, проверять нужно в БД
+     */
+    public synchronized long find(long userId, String code, long createdAfterMillis) {
+        long key = encode(code);
+        if (key == NOT_INDEXED) {
+            return NOT_INDEXED;
+        }
+        int slot = lookup(userId, key);
+        if (slot >= 0) {
+            if (createdAt[slot] > createdAfterMillis) {
+                hits++;
+                return ids[slot];
+            }
+            remove(slot);
+            expired++;
+        }
+        misses++;
+        return 0;
+    }
+
+    /**
+     * Удаляет код пользователя (после погашения или отказа БД).
+     * @return true, если запись была в индексе
+     */
+    public synchronized boolean remove(long userId, String code) {
+        long key = encode(code);
+        int slot = key == NOT_INDEXED ? -1 : lookup(userId, key);
+        if (slot < 0) {
+            return false;
+        }
+        remove(slot);
+        return true;
+    }
+
+    /**
+     * Удаляет записи с истёкшим TTL.
+     * @param createdAfterMillis коды, созданные не позже этого момента, удаляются
+     * @return число удалённых записей
+     */
+    public synchronized int purgeExpired(long createdAfterMillis) {
+        int removed = 0;
+        for (int slot = 0; slot < ids.length; slot++) {
+            if (ids[slot] > 0 && createdAt[slot] <= createdAfterMillis) {
+                remove(slot);
+                removed++;
+            }
+        }
+        expired += removed;
+        if (removed > 0 && size * 8 < ids.length && ids.length > MIN_CAPACITY) {
+            rehash(tableSizeFor(size));
+        }
+        return removed;
+    }
+
+    /**
+     * Удаляет все записи (перед повторным заполнением из БД).
+     */
+    public synchronized void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @return число активных кодов в индексе
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Сводка для администратора (GET /admin/otp): размер, ёмкость, режим и счётчики проверок.
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", size);
+        stats.put("capacity", ids.length);
+        stats.put("authoritative", authoritative);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("expired", expired);
+        return stats;
+    }
+
+    /** @return слот записи или -1 */
+    private int lookup(long userId, long key) {
+        for (int slot = slot(userId, key); ids[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (ids[slot] > 0 && codes[slot] == key && userIds[slot] == userId) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void remove(int slot) {
+        ids[slot] = TOMBSTONE;
+        size--;
+    }
+
+    private int slot(long userId, long key) {
+        long h = userId * 0x9e3779b97f4a7c15L ^ key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldUsers = userIds;
+        long[] oldCodes = codes;
+        long[] oldIds = ids;
+        long[] oldCreated = createdAt;
+        allocate(capacity);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] > 0) {
+                int slot = slot(oldUsers[i], oldCodes[i]);
+                while (ids[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                userIds[slot] = oldUsers[i];
+                codes[slot] = oldCodes[i];
+                ids[slot] = oldIds[i];
+                createdAt[slot] = oldCreated[i];
+                size++;
+                used++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        userIds = new long[capacity];
+        codes = new long[capacity];
+        ids = new long[capacity];
+        createdAt = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+        used = 0;
+    }
+
+    /** Степень двойки с заполнением не больше 1/4 */
+    private static int tableSizeFor(int entries) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < entries * 4L && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
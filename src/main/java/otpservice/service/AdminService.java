@@ -1,12 +1,15 @@
 package otpservice.service;
 
+import otpservice.dao.OperationDao;
 import otpservice.dao.OtpConfigDao;
 import otpservice.dao.OtpCodeDao;
 import otpservice.dao.UserDao;
+import otpservice.model.Operation;
 import otpservice.model.OtpConfig;
 import otpservice.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import otpservice.util.TokenManager;
 
 import java.util.List;
 
@@ -15,20 +18,61 @@ public class AdminService {
     private final OtpConfigDao configDao;
     private final UserDao userDao;
     private final OtpCodeDao codeDao;
+    private final OtpConfigCache configCache;
+    private final OperationDao operationDao;
+    private final OperationCatalogCache operationCatalog;
 
-    public AdminService(OtpConfigDao configDao, UserDao userDao, OtpCodeDao codeDao) {
+    public AdminService(OtpConfigDao configDao, UserDao userDao, OtpCodeDao codeDao, OtpConfigCache configCache,
+                        OperationDao operationDao, OperationCatalogCache operationCatalog) {
         this.configDao = configDao;
         this.userDao = userDao;
         this.codeDao = codeDao;
+        this.configCache = configCache;
+        this.operationDao = operationDao;
+        this.operationCatalog = operationCatalog;
     }
 
     public void updateOtpConfig(int length, int ttlSeconds) {
         // Создаем объект OtpConfig (id обычно не важен при обновлении)
         OtpConfig cfg = new OtpConfig(1L, length, ttlSeconds);
         configDao.updateConfig(cfg);
+        // новый снимок действует на этом узле сразу, остальные узлы подхватят его по версии
+        configCache.reload();
         logger.info("OTP config updated: length={}, ttlSeconds={}", length, ttlSeconds);
     }
 
+    /**
+     * Добавляет операцию в каталог и сразу перестраивает снимок каталога.
+     * @throws IllegalArgumentException если параметры некорректны
+     * @throws IllegalStateException если номер уже занят
+     */
+    public Operation addOperation(int number, String name, String description) {
+        if (number <= 0 || name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Operation number and name are required");
+        }
+        Operation created = operationDao.create(new Operation(null, number, name, description));
+        operationCatalog.invalidate();
+        logger.info("Operation added: {}", created);
+        return created;
+    }
+
+    /**
+     * Изменяет название и описание операции и сразу перестраивает снимок каталога.
+     * @return изменённая операция или null, если операции с таким номером нет
+     * @throws IllegalArgumentException если название не задано
+     */
+    public Operation updateOperation(int number, String name, String description) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Operation name is required");
+        }
+        if (!operationDao.update(new Operation(null, number, name, description))) {
+            return null;
+        }
+        operationCatalog.invalidate();
+        logger.info("Operation {} updated", number);
+        return operationCatalog.find(number);
+    }
+
     public List<User> getAllUsersWithoutAdmins() {
         return userDao.findAllUsersWithoutAdmins();
     }
@@ -36,6 +80,8 @@ public class AdminService {
     public void deleteUserAndCodes(Long userId) {
         codeDao.deleteAllByUserId(userId);
         userDao.delete(userId);
+        // выданные пользователю токены перестают действовать сразу, в том числе JWT
+        TokenManager.revokeUser(userId);
         logger.info("Deleted user id: {}, and user's OTP codes", userId);
     }
 }
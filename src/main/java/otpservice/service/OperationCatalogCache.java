@@ -0,0 +1,206 @@
+package otpservice.service;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.dao.OperationDao;
+import otpservice.model.Operation;
+import otpservice.util.ImmutableIntMap;
+import otpservice.util.JsonUtil;
+import otpservice.util.ResponseCompression;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Каталог операций в памяти: готовый JSON-ответ /operations со строгим ETag
+ * и поиск операции по номеру ({@link #find(int)}) без обращения к БД.
+ * <p>
+ * Список операций сериализуется один раз в массив байт; ETag вычисляется как SHA-256 тела.
+ * Операции индексируются по номеру в неизменяемой таблице {@link ImmutableIntMap}.
+ * Все части снимка заменяются одной записью volatile-поля.
+ * Не чаще одного раза в интервал перепроверки один из запросов сверяет отпечаток таблицы
+ * operations в БД и при изменении перестраивает снимок; остальные запросы в это время
+ * получают текущий снимок. {@link #invalidate()} перестраивает снимок немедленно
+ * (вызывается после изменения каталога через администратора).
+ * </p>
+ * <p>
+ * Если перепроверка не удалась (БД недоступна), запросы продолжают получать текущий снимок,
+ * а следующая попытка откладывается на интервал перепроверки. Сбой пишется в журнал один раз,
+ * до восстановления.
+ * </p>
+ */
+public class OperationCatalogCache {
+    private static final Logger logger = LoggerFactory.getLogger(OperationCatalogCache.class);
+
+    private static final ObjectWriter OPERATIONS_WRITER = JsonUtil.listWriterFor(Operation.class);
+
+    private final OperationDao operationDao;
+    private final long revalidateNanos;
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+    /** Последняя перепроверка не удалась; читается и пишется только под {@link #revalidating} */
+    private boolean revalidationFailing;
+
+    private volatile Snapshot snapshot;
+
+    public OperationCatalogCache(OperationDao operationDao, Duration revalidateInterval) {
+        this.operationDao = operationDao;
+        this.revalidateNanos = revalidateInterval.toNanos();
+    }
+
+    /**
+     * Возвращает актуальный снимок каталога, при необходимости загружая его из БД.
+     */
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return reload();
+        }
+        if (System.nanoTime() - current.checkedAt > revalidateNanos
+                && revalidating.compareAndSet(false, true)) {
+            try {
+                String fingerprint = operationDao.fingerprint();
+                if (fingerprint.equals(current.fingerprint)) {
+                    snapshot = current.touched();
+                } else {
+                    logger.info("Operations catalog changed, rebuilding cached response");
+                    current = reload();
+                }
+                if (revalidationFailing) {
+                    revalidationFailing = false;
+                    logger.info("Operations catalog revalidation recovered");
+                }
+            } catch (RuntimeException e) {
+                snapshot = current.touched();
+                if (!revalidationFailing) {
+                    revalidationFailing = true;
+                    logger.warn("Operations catalog revalidation failed, serving cached catalog: {}", e.getMessage());
+                } else {
+                    logger.debug("Operations catalog revalidation still failing: {}", e.getMessage());
+                }
+            } finally {
+                revalidating.set(false);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Ищет операцию по номеру в текущем снимке.
+     * Возвращаемый объект общий для всех потоков и не должен изменяться.
+     * @return операция или null, если номер неизвестен
+     */
+    public Operation find(int number) {
+        return get().find(number);
+    }
+
+    /**
+     * Перечитывает каталог из БД и атомарно подменяет снимок.
+     */
+    public void invalidate() {
+        logger.info("Operations catalog cache invalidated");
+        reload();
+    }
+
+    private synchronized Snapshot reload() {
+        String fingerprint = operationDao.fingerprint();
+        List<Operation> operations = operationDao.getAllOperations();
+        byte[] body;
+        try {
+            body = JsonUtil.toJsonBytes(OPERATIONS_WRITER, operations);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Snapshot fresh = new Snapshot(body, strongEtag(body), fingerprint,
+                List.copyOf(operations), ImmutableIntMap.of(operations, Operation::getNumber), System.nanoTime());
+        snapshot = fresh;
+        logger.info("Operations catalog cached: {} operations, {} bytes, ETag {}",
+                operations.size(), body.length, fresh.etag);
+        return fresh;
+    }
+
+    private static String strongEtag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 algorithm not available", e);
+        }
+    }
+
+    /**
+     * Неизменяемый снимок: готовое тело ответа, его ETag и операции по номерам.
+     */
+    public static final class Snapshot {
+        private final byte[] body;
+        private final String etag;
+        private final String fingerprint;
+        private final List<Operation> operations;
+        private final ImmutableIntMap<Operation> byNumber;
+        private final long checkedAt;
+
+        private Snapshot(byte[] body, String etag, String fingerprint, List<Operation> operations,
+                         ImmutableIntMap<Operation> byNumber, long checkedAt) {
+            this.body = body;
+            this.etag = etag;
+            this.fingerprint = fingerprint;
+            this.operations = operations;
+            this.byNumber = byNumber;
+            this.checkedAt = checkedAt;
+        }
+
+        private Snapshot touched() {
+            return new Snapshot(body, etag, fingerprint, operations, byNumber, System.nanoTime());
+        }
+
+        /** @return операция по номеру или null */
+        public Operation find(int number) {
+            return byNumber.get(number);
+        }
+
+        /** @return неизменяемый список операций */
+        public List<Operation> getOperations() {
+            return operations;
+        }
+
+        /** @return тело ответа в UTF-8; массив не должен изменяться */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /** @return строгий ETag в кавычках */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Проверяет заголовок If-None-Match (список ETag через запятую или *).
+         * @param ifNoneMatch значение заголовка (может быть null)
+         * @return true, если у клиента актуальная версия
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*")) {
+                    return true;
+                }
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (ResponseCompression.baseEtag(tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package otpservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.dao.OtpConfigDao;
+import otpservice.model.OtpConfig;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Снимок конфигурации OTP-кодов в памяти.
+ * <p>
+ * {@link #get()} — чтение volatile-поля без обращения к БД. Снимок заменяется целиком:
+ * сразу после изменения через {@link AdminService#updateOtpConfig(int, int)} ({@link #reload()})
+ * и фоновой проверкой версии записи config, которая раз в интервал подхватывает изменения,
+ * сделанные другими узлами. Полная запись читается из БД только при смене версии.
+ * </p>
+ */
+public class OtpConfigCache {
+    private static final Logger logger = LoggerFactory.getLogger(OtpConfigCache.class);
+
+    private final OtpConfigDao otpConfigDao;
+    private final long checkIntervalMillis;
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "otp-config-check");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile OtpConfig snapshot;
+
+    public OtpConfigCache(OtpConfigDao otpConfigDao, Duration checkInterval) {
+        this.otpConfigDao = otpConfigDao;
+        this.checkIntervalMillis = checkInterval.toMillis();
+    }
+
+    /**
+     * Текущая конфигурация. Возвращаемый объект общий для всех потоков и не должен изменяться.
+     * @return снимок конфигурации или null, если запись в БД отсутствует
+     */
+    public OtpConfig get() {
+        OtpConfig current = snapshot;
+        return current != null ? current : reload();
+    }
+
+    /**
+     * Перечитывает конфигурацию из БД и атомарно заменяет снимок.
+     */
+    public synchronized OtpConfig reload() {
+        OtpConfig fresh = otpConfigDao.getConfig();
+        if (fresh != null) {
+            snapshot = fresh;
+        }
+        return fresh;
+    }
+
+    /**
+     * Запускает фоновую проверку версии конфигурации.
+     */
+    public void start() {
+        logger.info("Starting OTP config version check, interval={} ms", checkIntervalMillis);
+        checker.scheduleWithFixedDelay(this::checkVersion, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /** Останавливает фоновую проверку */
+    public void stop() {
+        checker.shutdownNow();
+    }
+
+    private void checkVersion() {
+        try {
+            OtpConfig current = snapshot;
+            long version = otpConfigDao.getVersion();
+            if (current == null || version != current.getVersion()) {
+                OtpConfig fresh = reload();
+                logger.info("OTP config changed (version {}), snapshot replaced: {}", version, fresh);
+            }
+        } catch (RuntimeException e) {
+            logger.error("OTP config version check failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package otpservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.dao.OtpCodeDao;
+import otpservice.model.OtpCode;
+import otpservice.model.OtpConfig;
+import otpservice.util.TimingWheel;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Перевод OTP-кодов в статус EXPIRED точно по истечении срока.
+ * <p>
+ * Каждый выданный код планируется на {@link TimingWheel} с шагом в секунду. Фоновый поток
+ * {@code otp-expiry} раз в секунду продвигает колесо и помечает наступившие коды пачками
+ * по {@code otp.expiry.batchSize} запросом {@code UPDATE ... WHERE id = ANY(?)}; использованные
+ * к этому моменту коды запрос не затрагивает. При ошибке БД пачка планируется повторно через
+ * {@code otp.expiry.retrySeconds}. Раз в {@code otp.expiry.indexPurgeSeconds} из индекса
+ * активных кодов удаляются записи с истёкшим TTL.
+ * </p>
+ * <p>
+ * Срок в колесе рассчитан по TTL на момент выдачи, а погашение проверяет текущий TTL.
+ * Поэтому запрос пометки дополнительно сверяет created_at с текущим TTL, а при изменении TTL
+ * движок один раз помечает коды старше нового срока и заново планирует остальные активные
+ * коды из БД; прежние записи колеса для них срабатывают вхолостую.
+ * </p>
+ */
+public class OtpExpiryEngine {
+    private static final Logger logger = LoggerFactory.getLogger(OtpExpiryEngine.class);
+
+    private final OtpCodeDao otpCodeDao;
+    private final OtpConfigCache otpConfigCache;
+    private final ActiveOtpIndex activeCodes;
+    private final int batchSize;
+    private final long retrySeconds;
+    private final long indexPurgeSeconds;
+
+    private final TimingWheel wheel = new TimingWheel(nowSecond());
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "otp-expiry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Наступившие id текущего тика; используется только потоком otp-expiry */
+    private long[] due = new long[256];
+    private int dueCount;
+    private long nextIndexPurge;
+    /** TTL, по которому запланированы коды; 0 — ещё не известен */
+    private long ttlSeconds;
+
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rescheduled = new AtomicLong();
+
+    public OtpExpiryEngine(OtpCodeDao otpCodeDao, OtpConfigCache otpConfigCache, ActiveOtpIndex activeCodes,
+                           int batchSize, long retrySeconds, long indexPurgeSeconds) {
+        this.otpCodeDao = otpCodeDao;
+        this.otpConfigCache = otpConfigCache;
+        this.activeCodes = activeCodes;
+        this.batchSize = Math.max(1, batchSize);
+        this.retrySeconds = Math.max(1, retrySeconds);
+        this.indexPurgeSeconds = indexPurgeSeconds;
+    }
+
+    /**
+     * Создаёт движок по параметрам {@code otp.expiry.*} из application.properties.
+     */
+    public static OtpExpiryEngine fromProperties(OtpCodeDao otpCodeDao, OtpConfigCache otpConfigCache,
+                                                 ActiveOtpIndex activeCodes, Properties config) {
+        int batchSize = Integer.parseInt(config.getProperty("otp.expiry.batchSize", "500"));
+        long retrySeconds = Long.parseLong(config.getProperty("otp.expiry.retrySeconds", "5"));
+        long purgeSeconds = Long.parseLong(config.getProperty("otp.expiry.indexPurgeSeconds", "60"));
+        return new OtpExpiryEngine(otpCodeDao, otpConfigCache, activeCodes, batchSize, retrySeconds, purgeSeconds);
+    }
+
+    /**
+     * Планирует перевод кода в EXPIRED.
+     * @param id              id записи в таблице codes
+     * @param expiresAtMillis момент истечения, мс от эпохи (округляется вверх до секунды)
+     */
+    public void schedule(long id, long expiresAtMillis) {
+        wheel.schedule(id, Math.floorDiv(expiresAtMillis + 999, 1000));
+        scheduled.incrementAndGet();
+    }
+
+    /**
+     * Запускает фоновый поток с шагом в одну секунду.
+     */
+    public void start() {
+        logger.info("Starting OTP expiry engine, batchSize={}, pending={}", batchSize, wheel.size());
+        nextIndexPurge = nowSecond() + indexPurgeSeconds;
+        ticker.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /** Останавливает фоновый поток */
+    public void stop() {
+        logger.info("Stopping OTP expiry engine: {}", stats());
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Сводка для администратора: запланировано, ожидает, помечено, пачки и ошибки.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", wheel.size());
+        stats.put("scheduled", scheduled.get());
+        stats.put("expired", expired.get());
+        stats.put("batches", batches.get());
+        stats.put("failures", failures.get());
+        stats.put("rescheduled", rescheduled.get());
+        stats.put("batchSize", batchSize);
+        return stats;
+    }
+
+    private void tick() {
+        try {
+            OtpConfig config = otpConfigCache.get();
+            if (config == null) {
+                return;
+            }
+            if (config.getTtlSeconds() != ttlSeconds) {
+                applyTtl(config.getTtlSeconds());
+            }
+            long now = nowSecond();
+            wheel.advance(now, this::collect);
+            flush(now, LocalDateTime.now().minusSeconds(ttlSeconds));
+            if (indexPurgeSeconds > 0 && now >= nextIndexPurge) {
+                nextIndexPurge = now + indexPurgeSeconds;
+                purgeIndex();
+            }
+        } catch (Exception e) {
+            logger.error("Error in OTP expiry tick", e);
+        }
+    }
+
+    private void collect(long id) {
+        if (dueCount == due.length) {
+            due = Arrays.copyOf(due, dueCount * 2);
+        }
+        due[dueCount++] = id;
+    }
+
+    /**
+     * Переходит на новый TTL: помечает коды старше него и планирует остальные активные коды
+     * по новому сроку. При первом тике только запоминает TTL — коды уже запланированы по нему.
+     */
+    private void applyTtl(long newTtlSeconds) {
+        if (ttlSeconds != 0) {
+            Duration ttl = Duration.ofSeconds(newTtlSeconds);
+            otpCodeDao.markAsExpiredOlderThan(ttl);
+            int count = 0;
+            for (OtpCode otp : otpCodeDao.findActiveCreatedAfter(LocalDateTime.now().minus(ttl))) {
+                long createdAtMillis = otp.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                schedule(otp.getId(), createdAtMillis + ttl.toMillis());
+                count++;
+            }
+            rescheduled.addAndGet(count);
+            logger.info("OTP TTL changed from {} to {} s: {} active codes rescheduled", ttlSeconds, newTtlSeconds, count);
+        }
+        ttlSeconds = newTtlSeconds;
+    }
+
+    private void flush(long now, LocalDateTime createdBefore) {
+        for (int from = 0; from < dueCount; from += batchSize) {
+            long[] batch = Arrays.copyOfRange(due, from, Math.min(dueCount, from + batchSize));
+            try {
+                expired.addAndGet(otpCodeDao.markAsExpired(batch, createdBefore));
+                batches.incrementAndGet();
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                logger.warn("Failed to expire {} OTP codes, retrying in {} s: {}",
+                        batch.length, retrySeconds, e.getMessage());
+                for (long id : batch) {
+                    wheel.schedule(id, now + retrySeconds);
+                }
+            }
+        }
+        dueCount = 0;
+        if (due.length > 4096) {
+            due = new long[256];
+        }
+    }
+
+    private void purgeIndex() {
+        OtpConfig config = otpConfigCache.get();
+        if (config != null) {
+            int removed = activeCodes.purgeExpired(
+                    System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(config.getTtlSeconds()));
+            logger.debug("Purged {} expired entries from active code index", removed);
+        }
+    }
+
+    private static long nowSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,174 @@
+package otpservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.service.notification.NotificationChannel;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Бюджет отправок OTP-кодов на пользователя и канал.
+ * <p>
+ * В скользящем окне {@code otp.sendBudget.windowSeconds} допускается не больше
+ * {@code otp.sendBudget.maxSends} отправок по каждому каналу (для канала можно переопределить:
+ * {@code otp.sendBudget.<CHANNEL>.maxSends}, {@code otp.sendBudget.<CHANNEL>.windowSeconds}).
+ * Окно хранится кольцевым буфером моментов последних отправок. При исчерпании бюджета
+ * включается пауза: {@code cooldownSeconds}, удваиваемая при каждом следующем исчерпании
+ * (не больше {@code maxCooldownSeconds}); счётчик удвоений сбрасывается, если за целое окно
+ * не было отказов. Проверка выполняется в памяти до генерации и сохранения кода.
+ * </p>
+ */
+public class OtpSendBudget {
+    private static final Logger logger = LoggerFactory.getLogger(OtpSendBudget.class);
+
+    private static final NotificationChannel[] CHANNELS = NotificationChannel.values();
+
+    private final int[] maxSends = new int[CHANNELS.length];
+    private final long[] windowMillis = new long[CHANNELS.length];
+    private final long cooldownMillis;
+    private final long maxCooldownMillis;
+    private final long sweepIntervalMillis;
+
+    /** id пользователя → состояние по каналам (индекс — ordinal канала) */
+    private final ConcurrentHashMap<Long, ChannelBudget[]> budgets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep;
+
+    private OtpSendBudget(Properties config) {
+        int defaultMax = Integer.parseInt(config.getProperty("otp.sendBudget.maxSends", "3"));
+        long defaultWindow = Long.parseLong(config.getProperty("otp.sendBudget.windowSeconds", "300"));
+        long longestWindow = 0;
+        for (NotificationChannel channel : CHANNELS) {
+            String prefix = "otp.sendBudget." + channel.name() + ".";
+            int max = Integer.parseInt(config.getProperty(prefix + "maxSends", String.valueOf(defaultMax)));
+            long window = Long.parseLong(config.getProperty(prefix + "windowSeconds", String.valueOf(defaultWindow)));
+            maxSends[channel.ordinal()] = max;
+            windowMillis[channel.ordinal()] = TimeUnit.SECONDS.toMillis(window);
+            longestWindow = Math.max(longestWindow, windowMillis[channel.ordinal()]);
+        }
+        this.cooldownMillis = TimeUnit.SECONDS.toMillis(
+                Long.parseLong(config.getProperty("otp.sendBudget.cooldownSeconds", "60")));
+        this.maxCooldownMillis = TimeUnit.SECONDS.toMillis(
+                Long.parseLong(config.getProperty("otp.sendBudget.maxCooldownSeconds", "3600")));
+        this.sweepIntervalMillis = Math.max(longestWindow, TimeUnit.SECONDS.toMillis(10));
+        this.nextSweep = new AtomicLong(System.currentTimeMillis() + sweepIntervalMillis);
+    }
+
+    /**
+     * Загружает параметры {@code otp.sendBudget.*} из application.properties.
+     */
+    public static OtpSendBudget fromProperties(Properties config) {
+        OtpSendBudget budget = new OtpSendBudget(config);
+        StringBuilder limits = new StringBuilder();
+        for (NotificationChannel channel : CHANNELS) {
+            int max = budget.maxSends[channel.ordinal()];
+            limits.append(channel.name().toLowerCase(Locale.ROOT)).append('=')
+                    .append(max <= 0 ? "off" : max + "/" + budget.windowMillis[channel.ordinal()] / 1000 + "s")
+                    .append(' ');
+        }
+        logger.info("OTP send budget: {}cooldown={}s..{}s", limits,
+                budget.cooldownMillis / 1000, budget.maxCooldownMillis / 1000);
+        return budget;
+    }
+
+    /**
+     * Списывает одну отправку из бюджета пользователя по каналу.
+     * @throws SendBudgetExceededException если бюджет исчерпан или действует пауза
+     */
+    public void acquire(long userId, NotificationChannel channel) {
+        int index = channel.ordinal();
+        if (maxSends[index] <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        maybeSweep(now);
+        ChannelBudget[] userBudgets = budgets.computeIfAbsent(userId, id -> new ChannelBudget[CHANNELS.length]);
+        ChannelBudget budget;
+        synchronized (userBudgets) {
+            budget = userBudgets[index];
+            if (budget == null) {
+                budget = new ChannelBudget(maxSends[index]);
+                userBudgets[index] = budget;
+            }
+        }
+        long waitMillis = budget.tryAcquire(now, windowMillis[index], cooldownMillis, maxCooldownMillis);
+        if (waitMillis > 0) {
+            long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMillis + 999));
+            logger.warn("OTP send budget exceeded: userId={}, channel={}, retry after {}s", userId, channel, retryAfter);
+            throw new SendBudgetExceededException(userId, channel, retryAfter);
+        }
+    }
+
+    /**
+     * Удаляет состояние пользователей, у которых закончились и окно, и пауза.
+     * Отправка, одновременная с удалением, может не попасть в новое окно — не больше одной на канал.
+     */
+    private void maybeSweep(long now) {
+        long scheduled = nextSweep.get();
+        if (now < scheduled || !nextSweep.compareAndSet(scheduled, now + sweepIntervalMillis)) {
+            return;
+        }
+        for (Iterator<ChannelBudget[]> it = budgets.values().iterator(); it.hasNext(); ) {
+            ChannelBudget[] userBudgets = it.next();
+            boolean idle = true;
+            synchronized (userBudgets) {
+                for (int i = 0; i < userBudgets.length && idle; i++) {
+                    idle = userBudgets[i] == null || userBudgets[i].isIdle(now, windowMillis[i]);
+                }
+            }
+            if (idle) {
+                it.remove();
+            }
+        }
+    }
+
+    /** Скользящее окно отправок одного пользователя по одному каналу */
+    private static final class ChannelBudget {
+        /** Моменты последних отправок, кольцевой буфер */
+        private final long[] sentAt;
+        private int head;
+        private int count;
+        private long cooldownUntil;
+        private long lastRejectAt;
+        private int strikes;
+
+        ChannelBudget(int maxSends) {
+            this.sentAt = new long[maxSends];
+        }
+
+        /**
+         * @return 0, если отправка разрешена и учтена; иначе время ожидания в мс
+         */
+        synchronized long tryAcquire(long now, long windowMillis, long cooldownMillis, long maxCooldownMillis) {
+            if (now < cooldownUntil) {
+                return cooldownUntil - now;
+            }
+            if (count == sentAt.length && now - sentAt[head] < windowMillis) {
+                // бюджет исчерпан: пауза растёт вдвое с каждым исчерпанием
+                long cooldown = Math.min(cooldownMillis << Math.min(strikes, 30), maxCooldownMillis);
+                strikes++;
+                lastRejectAt = now;
+                cooldownUntil = Math.max(now + cooldown, sentAt[head] + windowMillis);
+                return cooldownUntil - now;
+            }
+            if (strikes > 0 && now - lastRejectAt >= windowMillis) {
+                strikes = 0;
+            }
+            sentAt[head] = now;
+            head = (head + 1) % sentAt.length;
+            if (count < sentAt.length) {
+                count++;
+            }
+            return 0;
+        }
+
+        synchronized boolean isIdle(long now, long windowMillis) {
+            long lastSent = count == 0 ? 0 : sentAt[(head + sentAt.length - 1) % sentAt.length];
+            return now >= cooldownUntil && now - lastSent >= windowMillis && now - lastRejectAt >= windowMillis;
+        }
+    }
+}
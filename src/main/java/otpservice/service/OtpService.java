@@ -1,8 +1,6 @@
 package otpservice.service;
 
-import otpservice.dao.OperationDao;
 import otpservice.dao.OtpCodeDao;
-import otpservice.dao.OtpConfigDao;
 import otpservice.dao.UserDao;
 import otpservice.model.*;
 import otpservice.service.notification.NotificationChannel;
@@ -14,34 +12,45 @@ import org.slf4j.LoggerFactory;
 import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 public class OtpService {
     private static final Logger logger = LoggerFactory.getLogger(OtpService.class);
     private static final SecureRandom random = new SecureRandom();
 
     private final OtpCodeDao otpCodeDao;
-    private final OtpConfigDao otpConfigDao;
+    private final OtpConfigCache otpConfigCache;
     private final UserDao userDao;
     private final NotificationServiceFactory notificationFactory;
-    private final OperationDao operationDao;
+    private final OperationCatalogCache operationCatalog;
+    private final OtpSendBudget sendBudget;
+    private final ActiveOtpIndex activeCodes;
+    private final OtpExpiryEngine expiryEngine;
 
     public OtpService(OtpCodeDao otpCodeDao,
-                      OtpConfigDao otpConfigDao,
+                      OtpConfigCache otpConfigCache,
                       UserDao userDao,
                       NotificationServiceFactory notificationFactory,
-                      OperationDao operationDao) {
+                      OperationCatalogCache operationCatalog,
+                      OtpSendBudget sendBudget,
+                      ActiveOtpIndex activeCodes,
+                      OtpExpiryEngine expiryEngine) {
         this.otpCodeDao = otpCodeDao;
-        this.otpConfigDao = otpConfigDao;
+        this.otpConfigCache = otpConfigCache;
         this.userDao = userDao;
         this.notificationFactory = notificationFactory;
-        this.operationDao = operationDao;
+        this.operationCatalog = operationCatalog;
+        this.sendBudget = sendBudget;
+        this.activeCodes = activeCodes;
+        this.expiryEngine = expiryEngine;
     }
 
     /**
      * Генерирует новый OTP-код, сохраняет его в БД и возвращает строку.
      */
     public String generateOtp(Long userId, int operationNumber) {
-        OtpConfig config = otpConfigDao.getConfig();
+        Operation operation = requireOperation(operationNumber);
+        OtpConfig config = otpConfigCache.get();
         int length = config.getLength();
 
         // Генерация случайного цифрового кода нужной длины
@@ -61,22 +70,28 @@ public class OtpService {
                 LocalDateTime.now()
         );
         otpCodeDao.save(otp);
-        Operation operation = operationDao.findByNumber(operationNumber);
+        long createdAtMillis = toMillis(otp.getCreatedAt());
+        activeCodes.add(otp.getId(), userId, code, createdAtMillis);
+        expiryEngine.schedule(otp.getId(), createdAtMillis + config.getTtlSeconds() * 1000L);
         logger.info("Generated OTP {} for userId={}, operationNumber={}, nameOperation={}", code, userId, operationNumber, operation.getName());
         return code;
     }
 
     /**
-     * Возвращает текущую конфигурацию длины и TTL для кодов.
+     * Возвращает текущую конфигурацию длины и TTL для кодов (снимок в памяти, без обращения к БД).
      */
     public OtpConfig getConfig() {
-        return otpConfigDao.getConfig();
+        return otpConfigCache.get();
     }
 
     /**
      * Сгенерировать и отправить код указанным каналом.
+     * Бюджет отправок проверяется до генерации и сохранения кода.
+     * @throws SendBudgetExceededException если пользователь исчерпал бюджет отправок по каналу
      */
     public void sendOtpToUser(Long userId, int operationNumber, NotificationChannel channel) {
+        Operation operation = requireOperation(operationNumber);
+        sendBudget.acquire(userId, channel);
         String code = generateOtp(userId, operationNumber);
         User user = userDao.findById(userId);
         if (user == null) {
@@ -88,76 +103,76 @@ public class OtpService {
         String recipient = user.getUsername();
         NotificationService svc = notificationFactory.getService(channel);
         svc.sendCode(user, code, operationNumber);
-        Operation operation = operationDao.findByNumber(operationNumber);
         logger.info("Sent OTP code for userId={} via {} to confirm operationName={} [{}]", userId, channel, operation.getName(), operationNumber);
     }
 
     /**
-     * Проверяет введённый код: активность и срок жизни, и переключает статус на USED.
+     * Операция из каталога в памяти.
+     * @throws IllegalArgumentException если операции с таким номером нет
      */
-    public boolean validateOtpAndMark(String inputCode) {
-        OtpCode otp = otpCodeDao.findByCode(inputCode);
-        if (otp == null) {
-            logger.warn("validateOtpAndMark: code not found {}", inputCode);
-            return false;
-        }
-        // Проверка статуса
-        if (otp.getStatus() != OtpStatus.ACTIVE) {
-            logger.warn("validateOtpAndMark: code {} is not active (status={})", inputCode, otp.getStatus());
-            return false;
-        }
-        // Проверка истечения по времени
-        OtpConfig config = otpConfigDao.getConfig();
-        LocalDateTime expiry = otp.getCreatedAt().plusSeconds(config.getTtlSeconds());
-        if (LocalDateTime.now().isAfter(expiry)) {
-            otpCodeDao.markAsExpiredOlderThan(Duration.ofSeconds(config.getTtlSeconds()));
-            logger.warn("validateOtpAndMark: code {} expired at {}", inputCode, expiry);
-            return false;
+    private Operation requireOperation(int operationNumber) {
+        Operation operation = operationCatalog.find(operationNumber);
+        if (operation == null) {
+            throw new IllegalArgumentException("Unknown operation: " + operationNumber);
         }
-
-        // Всё ок — помечаем как USED
-        otpCodeDao.markAsUsed(otp.getId());
-        logger.info("validateOtpAndMark: code {} validated and marked USED", inputCode);
-        return true;
+        return operation;
     }
 
     /**
-     * Проверяет введённый код: активность и срок жизни, и НЕ переключает статус на USED.
+     * Проверяет и погашает введённый код пользователя: код должен принадлежать пользователю,
+     * быть активным и не старше TTL из конфигурации. Код погашается в БД одним запросом;
+     * повторное или одновременное погашение того же кода возвращает null. Если индекс
+     * в памяти полный (по умолчанию: один узел, {@code otp.index.authoritative=true}),
+     * неизвестные, повторные и просроченные коды отклоняются без обращения к БД; иначе код
+     * мог выдать другой узел, и промах индекса проверяется в БД.
+     * @return погашенный код (с номером операции) или null, если код недействителен
      */
-    public boolean validateOtp(String inputCode) {
-        OtpCode otp = otpCodeDao.findByCode(inputCode);
-        if (otp == null) {
-            logger.warn("validateOtp: code not found {}", inputCode);
-            return false;
+    public OtpCode consumeOtp(Long userId, String inputCode) {
+        OtpConfig config = otpConfigCache.get();
+        LocalDateTime createdAfter = LocalDateTime.now().minusSeconds(config.getTtlSeconds());
+        long indexed = activeCodes.find(userId, inputCode, toMillis(createdAfter));
+        if (indexed == 0 && activeCodes.isAuthoritative()) {
+            logger.warn("consumeOtp: code rejected for userId={} (unknown, used or expired)", userId);
+            return null;
         }
-        // Проверка статуса
-        if (otp.getStatus() != OtpStatus.ACTIVE) {
-            logger.warn("validateOtp: code {} is not active (status={})", inputCode, otp.getStatus());
-            return false;
+        OtpCode otp = otpCodeDao.consume(inputCode, userId, createdAfter);
+        if (indexed > 0) {
+            // БД ответила: код погашен сейчас или уже недействителен — запись индекса не нужна
+            activeCodes.remove(userId, inputCode);
         }
-        // Проверка истечения по времени
-        OtpConfig config = otpConfigDao.getConfig();
-        LocalDateTime expiry = otp.getCreatedAt().plusSeconds(config.getTtlSeconds());
-        if (LocalDateTime.now().isAfter(expiry)) {
-            otpCodeDao.markAsExpiredOlderThan(Duration.ofSeconds(config.getTtlSeconds()));
-            logger.warn("validateOtp: code {} expired at {}", inputCode, expiry);
-            return false;
+        if (otp == null) {
+            logger.warn("consumeOtp: code rejected by database for userId={}", userId);
+            return null;
         }
-
-        // Всё ок — помечаем как USED
-//        otpCodeDao.markAsUsed(otp.getId());
-//        logger.info("validateOtp: code {} validated and marked USED", inputCode);
-        return true;
+        logger.info("consumeOtp: code id={} of userId={} validated and marked USED", otp.getId(), userId);
+        return otp;
     }
 
     /**
-     * Меняет статус всех просроченных кодов на EXPIRED.
+     * Заполняет индекс активных кодов из таблицы codes и планирует их истечение.
+     * Коды, истёкшие пока сервис был остановлен, помечаются одним запросом.
+     * Вызывается при старте приложения.
+     * @return число загруженных кодов
      */
-    public void markExpiredOtps() {
-        OtpConfig config = otpConfigDao.getConfig();
+    public int loadActiveCodes() {
+        OtpConfig config = otpConfigCache.get();
         Duration ttl = Duration.ofSeconds(config.getTtlSeconds());
         otpCodeDao.markAsExpiredOlderThan(ttl);
-        logger.info("markExpiredOtps: expired codes older than {} seconds", config.getTtlSeconds());
+        LocalDateTime createdAfter = LocalDateTime.now().minus(ttl);
+        activeCodes.clear();
+        int loaded = 0;
+        for (OtpCode otp : otpCodeDao.findActiveCreatedAfter(createdAfter)) {
+            long createdAtMillis = toMillis(otp.getCreatedAt());
+            expiryEngine.schedule(otp.getId(), createdAtMillis + ttl.toMillis());
+            if (activeCodes.add(otp.getId(), otp.getUserId(), otp.getCode(), createdAtMillis)) {
+                loaded++;
+            }
+        }
+        logger.info("loadActiveCodes: {} active codes indexed", loaded);
+        return loaded;
     }
-}
 
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
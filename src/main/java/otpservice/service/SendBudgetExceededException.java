@@ -0,0 +1,22 @@
+package otpservice.service;
+
+import otpservice.service.notification.NotificationChannel;
+
+/**
+ * Пользователь исчерпал бюджет отправок OTP-кодов по каналу (HTTP 429 с заголовком Retry-After).
+ */
+public class SendBudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public SendBudgetExceededException(long userId, NotificationChannel channel, long retryAfterSeconds) {
+        super("OTP send budget exceeded for userId=" + userId + " via " + channel);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /** @return через сколько секунд отправка снова станет возможной */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,22 +1,13 @@
 package otpservice.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.sun.net.httpserver.HttpExchange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import otpservice.dao.OperationDao;
-import otpservice.dao.OtpCodeDao;
 import otpservice.dao.UserDao;
-import otpservice.dao.impl.OperationDaoImpl;
-import otpservice.dao.impl.OtpCodeDaoImpl;
-import otpservice.dao.impl.OtpConfigDaoImpl;
-import otpservice.dao.impl.UserDaoImpl;
 import otpservice.model.Operation;
 import otpservice.model.OtpCode;
 import otpservice.model.User;
 import otpservice.service.notification.NotificationChannel;
-import otpservice.service.notification.NotificationServiceFactory;
-import otpservice.util.HttpUtils;
 import otpservice.util.JsonUtil;
 import otpservice.util.PasswordEncoder;
 
@@ -26,26 +17,19 @@ import java.util.List;
 import java.util.Map;
 
 public class UserOperationService {
-    private final OtpService otpService = new OtpService(
-            new OtpCodeDaoImpl(),
-            new OtpConfigDaoImpl(),
-            new UserDaoImpl(),
-            new NotificationServiceFactory(),
-            new OperationDaoImpl()
-    );
     private static final Logger logger = LoggerFactory.getLogger(UserOperationService.class);
-    private final OperationDao operationDao;
-    private final OtpCodeDao otpCodeDao;
+    private final OperationCatalogCache operationCatalog;
     private final UserDao userDao;
+    private final OtpService otpService;
 
-    public UserOperationService(OperationDao operationDao, OtpCodeDao otpCodeDao, UserDao userDao) {
-        this.operationDao = operationDao;
-        this.otpCodeDao = otpCodeDao;
+    public UserOperationService(OperationCatalogCache operationCatalog, UserDao userDao, OtpService otpService) {
+        this.operationCatalog = operationCatalog;
         this.userDao = userDao;
+        this.otpService = otpService;
     }
 
     public List<Operation> getAllOperations() {
-        return operationDao.getAllOperations();
+        return operationCatalog.get().getOperations();
     }
 
     public String confirmOperation(Long userId, int operationNumber, NotificationChannel channel) {
@@ -54,19 +38,21 @@ public class UserOperationService {
         return response;
     }
 
-    public boolean validateCode(String inputCode) {
-        boolean valid;
-//        otpService.sendOtpToUser(userId, operationNumber, channel);
-        valid = otpService.validateOtp(inputCode);
-        return valid;
-    }
-
-    public String completeOperation(String inputCode, JsonNode requestRootNode, HttpExchange exchange) throws IOException {
-        OtpCode codeRaw = otpCodeDao.findByCode(inputCode);
+    /**
+     * Погашает код пользователя и выполняет операцию, для которой он был выдан.
+     * Код переводится в USED до выполнения операции одним запросом к БД,
+     * поэтому при одновременных подтверждениях операцию выполняет только один запрос.
+     * @return JSON с результатом операции или null, если код недействителен, просрочен или уже использован
+     */
+    public String completeOperation(Long userId, String inputCode, JsonNode requestRootNode) throws IOException {
+        OtpCode codeRaw = otpService.consumeOtp(userId, inputCode);
+        if (codeRaw == null) {
+            return null;
+        }
         int operationNumber = codeRaw.getOperationNumber();
-        Long userId = codeRaw.getUserId();
 
-        String operationName = operationDao.findByNumber(operationNumber).getName();
+        Operation operation = operationCatalog.find(operationNumber);
+        String operationName = operation != null ? operation.getName() : null;
         String userName = userDao.findById(userId).getUsername();
         Map<String, Object> response = new HashMap<>();
 
@@ -76,9 +62,6 @@ public class UserOperationService {
 
         String result = null;
         try {
-
-
-
             switch (operationNumber) {
                 case 101:
                     result = UpdatePassword(userId, requestRootNode);
@@ -90,12 +73,9 @@ public class UserOperationService {
                     result = MakeTransfer(userId, requestRootNode);
                     break;
                 default:
-                    HttpUtils.sendError(exchange, 401, "Unknown operation number");
+                    logger.warn("completeOperation: no handler for operation number {}", operationNumber);
             }
 
-            otpCodeDao.markAsUsed(codeRaw.getId());
-            logger.info("completeOperation: code {} validated and marked USED", inputCode);
-
             response.put("result", result);
             logger.info("Operation {} by user {} completed successful!", operationName, userName);
 
@@ -1,9 +1,10 @@
 package otpservice.service;
 
 import otpservice.dao.UserDao;
+import otpservice.model.TokenPair;
 import otpservice.model.User;
 import otpservice.model.UserRole;
-import otpservice.util.PasswordEncoder;
+import otpservice.util.PasswordHashingExecutor;
 import otpservice.util.TokenManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,14 +14,17 @@ import java.util.List;
 public class UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
     private final UserDao userDao;
+    private final PasswordHashingExecutor passwordHashing;
 
-    public UserService(UserDao userDao) {
+    public UserService(UserDao userDao, PasswordHashingExecutor passwordHashing) {
         this.userDao = userDao;
+        this.passwordHashing = passwordHashing;
     }
 
     /**
      * Регистрирует нового пользователя.
      * @throws IllegalArgumentException если логин уже занят или если пытаются создать второго администратора.
+     * @throws otpservice.util.ServiceOverloadedException если пул хеширования паролей перегружен.
      */
     public void register(String username, String password, String email, UserRole role) {
         if (userDao.findByUsername(username) != null) {
@@ -32,7 +36,7 @@ public class UserService {
             throw new IllegalStateException("Administrator already exists");
         }
 
-        String hashed = PasswordEncoder.hash(password);
+        String hashed = passwordHashing.hash(password);
         User user = new User(null, username, hashed, email, role);
         userDao.create(user);
         logger.info("Registered new user: {} with role {}", username, role);
@@ -49,22 +53,38 @@ public class UserService {
     }
 
     /**
-     * Аутентифицирует пользователя и возвращает токен.
+     * Аутентифицирует пользователя и возвращает токен доступа и refresh-токен.
      * @throws IllegalArgumentException если пользователь не найден или пароль неверен.
+     * @throws otpservice.util.ServiceOverloadedException если пул хеширования паролей перегружен.
      */
-    public String login(String username, String password) {
+    public TokenPair login(String username, String password) {
         User user = userDao.findByUsername(username);
         if (user == null) {
             logger.warn("Login failed: user not found {}", username);
             throw new IllegalArgumentException("Invalid username or password");
         }
-        if (!PasswordEncoder.matches(password, user.getPasswordHash())) {
+        if (!passwordHashing.matches(password, user.getPasswordHash())) {
             logger.warn("Login failed: wrong password for {}", username);
             throw new IllegalArgumentException("Invalid username or password");
         }
-        String token = TokenManager.generateToken(user);
+        TokenPair tokens = TokenManager.issueTokens(user);
         logger.info("User {} logged in, token generated", username);
-        return token;
+        return tokens;
+    }
+
+    /**
+     * Обменивает refresh-токен на новую пару токенов без обращения к БД и проверки пароля.
+     * @throws IllegalArgumentException если refresh-токен недействителен, просрочен или уже использован.
+     */
+    public TokenPair refresh(String refreshToken) {
+        if (refreshToken == null || refreshToken.isEmpty()) {
+            throw new IllegalArgumentException("Invalid or expired refresh token");
+        }
+        TokenPair tokens = TokenManager.refresh(refreshToken);
+        if (tokens == null) {
+            throw new IllegalArgumentException("Invalid or expired refresh token");
+        }
+        return tokens;
     }
 
     public User findById(Long id) {
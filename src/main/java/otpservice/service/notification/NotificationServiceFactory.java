@@ -1,14 +1,41 @@
 package otpservice.service.notification;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  * Фабрика для получения нужной реализации NotificationService по каналу.
+ * <p>
+ * Реализации создаются лениво при первом обращении к каналу и далее переиспользуются:
+ * редко используемые каналы (SMS, Telegram) не загружают конфигурацию при старте.
+ * </p>
  */
 public class NotificationServiceFactory {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationServiceFactory.class);
+
+    private final AtomicReferenceArray<NotificationService> services =
+            new AtomicReferenceArray<>(NotificationChannel.values().length);
 
     /**
      * Возвращает реализацию NotificationService под указанный канал.
      */
     public NotificationService getService(NotificationChannel channel) {
+        NotificationService service = services.get(channel.ordinal());
+        if (service != null) {
+            return service;
+        }
+        NotificationService created = create(channel);
+        if (services.compareAndSet(channel.ordinal(), null, created)) {
+            logger.info("Notification channel {} initialized", channel);
+            return created;
+        }
+        // Другой поток успел создать экземпляр раньше
+        return services.get(channel.ordinal());
+    }
+
+    private NotificationService create(NotificationChannel channel) {
         switch (channel) {
             case EMAIL:
                 return new EmailNotificationService();
@@ -23,4 +50,3 @@ public class NotificationServiceFactory {
         }
     }
 }
-
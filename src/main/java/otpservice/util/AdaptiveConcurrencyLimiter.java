@@ -0,0 +1,173 @@
+package otpservice.util;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Адаптивный ограничитель числа одновременно выполняемых запросов (gradient-алгоритм).
+ * <p>
+ * Лимит пересчитывается по каждому завершённому запросу: долгосрочная средняя задержка
+ * сравнивается с текущей, и при росте задержки (очередь в БД, медленный SMTP) лимит
+ * пропорционально уменьшается, а при стабильной задержке плавно растёт на sqrt(limit).
+ * Ошибки сервера (5xx, исключения) уменьшают лимит мультипликативно.
+ * Захват и освобождение слота — CAS без блокировок; пересчёт лимита выполняется
+ * только при свободной блокировке (иначе замер пропускается).
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /** Коэффициент мультипликативного уменьшения при ошибке */
+    private static final double BACKOFF_RATIO = 0.9;
+    /** Допустимое превышение текущей задержки над долгосрочной */
+    private static final double RTT_TOLERANCE = 1.5;
+    /** Сглаживание нового лимита */
+    private static final double LIMIT_SMOOTHING = 0.2;
+    /** Окно долгосрочной средней задержки (в замерах) */
+    private static final int LONG_WINDOW = 600;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final ReentrantLock sampleLock = new ReentrantLock();
+
+    private volatile int limit;
+    // Доступ только под sampleLock
+    private double estimatedLimit;
+    private double longRttNanos;
+    private long samples;
+
+    public AdaptiveConcurrencyLimiter(String name, Settings settings) {
+        this.name = name;
+        this.minLimit = settings.minLimit;
+        this.maxLimit = settings.maxLimit;
+        this.limit = settings.initialLimit;
+        this.estimatedLimit = settings.initialLimit;
+    }
+
+    /**
+     * Пытается занять слот.
+     * @return true, если запрос допущен; false — лимит исчерпан
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Освобождает слот и учитывает замер задержки.
+     * @param rttNanos длительность обработки запроса
+     * @param failed   запрос завершился ошибкой сервера
+     */
+    public void release(long rttNanos, boolean failed) {
+        int inFlightAtRelease = inFlight.getAndDecrement();
+        if (!sampleLock.tryLock()) {
+            return;
+        }
+        try {
+            onSample(rttNanos, failed, inFlightAtRelease);
+        } finally {
+            sampleLock.unlock();
+        }
+    }
+
+    private void onSample(long rttNanos, boolean failed, int inFlightAtRelease) {
+        samples++;
+        if (samples == 1) {
+            longRttNanos = rttNanos;
+        } else {
+            double factor = 2.0 / (Math.min(samples, LONG_WINDOW) + 1);
+            longRttNanos = longRttNanos * (1 - factor) + rttNanos * factor;
+        }
+        // Если долгосрочная задержка сильно выше текущей — нагрузка спала, подтягиваем базу вниз
+        if (longRttNanos / rttNanos > 2.0) {
+            longRttNanos *= 0.95;
+        }
+
+        double newLimit;
+        if (failed) {
+            newLimit = estimatedLimit * BACKOFF_RATIO;
+        } else if (inFlightAtRelease < estimatedLimit / 2) {
+            // Лимит не был узким местом — замер не информативен
+            return;
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / rttNanos));
+            double queueSize = Math.sqrt(estimatedLimit);
+            newLimit = estimatedLimit * gradient + queueSize;
+            newLimit = estimatedLimit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING;
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** @return текущий лимит одновременных запросов */
+    public int getLimit() {
+        return limit;
+    }
+
+    /** @return число запросов, выполняющихся в данный момент */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /** @return число допущенных запросов */
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    /** @return число отклонённых запросов */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Параметры ограничителя из application.properties (префикс {@code limiter.}).
+     */
+    public static class Settings {
+        final int initialLimit;
+        final int minLimit;
+        final int maxLimit;
+        final int retryAfterSeconds;
+
+        public Settings(int initialLimit, int minLimit, int maxLimit, int retryAfterSeconds) {
+            if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+                throw new IllegalArgumentException("Invalid limiter bounds: min=" + minLimit
+                        + ", initial=" + initialLimit + ", max=" + maxLimit);
+            }
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public static Settings fromProperties(Properties props) {
+            return new Settings(
+                    Integer.parseInt(props.getProperty("limiter.initialLimit", "20")),
+                    Integer.parseInt(props.getProperty("limiter.minLimit", "2")),
+                    Integer.parseInt(props.getProperty("limiter.maxLimit", "200")),
+                    Integer.parseInt(props.getProperty("limiter.retryAfterSeconds", "1")));
+        }
+
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package otpservice.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума для строковых и числовых ключей.
+ * <p>
+ * Проверка {@link #mightContain(String)} — k обращений к массиву бит без блокировок и аллокаций;
+ * ложноотрицательных ответов нет, доля ложноположительных задаётся при создании.
+ * Добавление безопасно из нескольких потоков. Удаление не поддерживается:
+ * для очистки фильтр строится заново.
+ * </p>
+ */
+public final class BloomFilter {
+    /** Смещение числовых ключей, чтобы они не совпадали с хешами строк */
+    private static final long LONG_SEED = 0x9e3779b97f4a7c15L;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedEntries ожидаемое число ключей
+     * @param falsePositiveRate допустимая доля ложноположительных ответов (0..1)
+     */
+    public BloomFilter(int expectedEntries, double falsePositiveRate) {
+        int n = Math.max(1, expectedEntries);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (m + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void add(String key) {
+        addHash(hash64(key));
+    }
+
+    public void add(long key) {
+        addHash(mix(key ^ LONG_SEED));
+    }
+
+    /**
+     * @return false — ключ точно не добавлялся; true — ключ, вероятно, добавлялся
+     */
+    public boolean mightContain(String key) {
+        return containsHash(hash64(key));
+    }
+
+    /**
+     * @return false — ключ точно не добавлялся; true — ключ, вероятно, добавлялся
+     */
+    public boolean mightContain(long key) {
+        return containsHash(mix(key ^ LONG_SEED));
+    }
+
+    private void addHash(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    private boolean containsHash(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 64-битный FNV-1a по символам строки с финальным перемешиванием */
+    private static long hash64(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /** Финальное перемешивание MurmurHash3 */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,375 @@
+package otpservice.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.model.User;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Хранилище сессий с упреждающим удалением просроченных токенов и ограничением памяти.
+ * <p>
+ * Поиск токена — одно обращение к ConcurrentHashMap и сравнение времени истечения, без блокировок.
+ * Каждая сессия дополнительно попадает в корзину по времени истечения (шаг = интервал очистки);
+ * {@link #purgeExpired(long)} снимает просроченные корзины целиком и удаляет их сессии,
+ * поэтому брошенные токены не накапливаются. Число сессий ограничено на пользователя
+ * (вытесняется самая старая сессия пользователя) и в целом (вытесняется ближайшая к истечению).
+ * </p>
+ * <p>
+ * Досрочно удалённая сессия (выход, отзыв, вытеснение) остаётся в своей корзине как «мёртвая»
+ * запись: удаление из середины очереди стоит O(n). Корзина считает такие записи и сжимается,
+ * когда они составляют не меньше половины, поэтому память под удалённые сессии освобождается
+ * сразу, а не по исходному сроку истечения.
+ * </p>
+ */
+public class ExpiringTokenStore implements SessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(ExpiringTokenStore.class);
+    /** Минимум мёртвых записей в корзине для её сжатия */
+    private static final int COMPACT_MIN_DEAD = 64;
+    /** Не чаще одного предупреждения о глобальном лимите за минуту */
+    private static final long WARN_INTERVAL_MILLIS = 60_000;
+
+    private final long bucketMillis;
+    private final int maxPerUser;
+    private final int maxTotal;
+
+    /** Токен → сессия (путь проверки токена) */
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    /** Номер корзины (время истечения / шаг) → сессии, истекающие в ней */
+    private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+    /** Id пользователя → его сессии в порядке выдачи */
+    private final ConcurrentHashMap<Long, ConcurrentLinkedDeque<Session>> byUser = new ConcurrentHashMap<>();
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    /** Момент последнего предупреждения о глобальном лимите и вытеснения на тот момент; под capacityLock */
+    private long lastCapacityWarnMillis;
+    private long evictedAtCapacityWarn;
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evictedPerUser = new LongAdder();
+    private final LongAdder evictedTotal = new LongAdder();
+    private final LongAdder revoked = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    private volatile long lastPurgeMillis = System.currentTimeMillis();
+    private volatile double evictionsPerMinute;
+    private long evictionsAtLastPurge;
+
+    /**
+     * @param bucketMillis шаг корзин по времени истечения (обычно равен интервалу очистки)
+     * @param maxPerUser   максимум одновременных сессий одного пользователя
+     * @param maxTotal     максимум сессий в хранилище
+     */
+    public ExpiringTokenStore(long bucketMillis, int maxPerUser, int maxTotal) {
+        this.bucketMillis = Math.max(1, bucketMillis);
+        this.maxPerUser = maxPerUser;
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * Сохраняет новую сессию, при необходимости вытесняя старые.
+     */
+    @Override
+    public void put(String token, User user, long expiresAtMillis) {
+        Session session = new Session(token, user, expiresAtMillis);
+        sessions.put(token, session);
+        link(session);
+        issued.increment();
+
+        byUser.compute(user.getId(), (id, deque) -> {
+            if (deque == null) {
+                deque = new ConcurrentLinkedDeque<>();
+            }
+            deque.addLast(session);
+            while (deque.size() > maxPerUser) {
+                Session oldest = deque.pollFirst();
+                if (oldest != null && sessions.remove(oldest.token, oldest)) {
+                    unlink(oldest);
+                    evictedPerUser.increment();
+                    logger.info("Session of user {} evicted: per-user limit {} reached", id, maxPerUser);
+                }
+            }
+            return deque;
+        });
+
+        if (sessions.size() > maxTotal) {
+            evictForCapacity();
+        }
+    }
+
+    /**
+     * Возвращает действующую сессию без блокировок.
+     * @return пользователь или null, если токена нет или он просрочен
+     */
+    @Override
+    public User get(String token, long nowMillis) {
+        Session session = sessions.get(token);
+        if (session == null || session.expiresAtMillis <= nowMillis) {
+            return null;
+        }
+        return session.user;
+    }
+
+    /**
+     * Возвращает действующую сессию и продлевает её, если осталось меньше половины срока.
+     * Продление — запись volatile-поля без блокировок; в новую корзину сессию
+     * переносит фоновая очистка.
+     */
+    @Override
+    public User touch(String token, long nowMillis, long ttlMillis) {
+        Session session = sessions.get(token);
+        if (session == null || session.expiresAtMillis <= nowMillis) {
+            return null;
+        }
+        if (session.expiresAtMillis - nowMillis < ttlMillis / 2) {
+            session.expiresAtMillis = nowMillis + ttlMillis;
+        }
+        return session.user;
+    }
+
+    /**
+     * Удаляет сессию досрочно.
+     * @return true, если сессия существовала
+     */
+    @Override
+    public boolean remove(String token) {
+        Session session = sessions.remove(token);
+        if (session == null) {
+            return false;
+        }
+        unlink(session);
+        forgetUserSession(session);
+        revoked.increment();
+        return true;
+    }
+
+    /**
+     * Удаляет все сессии пользователя.
+     * @return число удалённых сессий
+     */
+    @Override
+    public int removeUser(long userId) {
+        ConcurrentLinkedDeque<Session> deque = byUser.remove(userId);
+        if (deque == null) {
+            return 0;
+        }
+        int removed = 0;
+        for (Session session : deque) {
+            if (sessions.remove(session.token, session)) {
+                unlink(session);
+                removed++;
+            }
+        }
+        revoked.add(removed);
+        return removed;
+    }
+
+    /**
+     * Удаляет все корзины, истёкшие к моменту {@code nowMillis}, вместе с их сессиями.
+     * Вызывается фоновым потоком очистки.
+     * @return число удалённых сессий
+     */
+    @Override
+    public int purgeExpired(long nowMillis) {
+        int removed = 0;
+        long currentBucket = nowMillis / bucketMillis;
+        Map.Entry<Long, Bucket> entry;
+        while ((entry = buckets.firstEntry()) != null && entry.getKey() < currentBucket) {
+            Bucket bucket = entry.getValue();
+            if (!buckets.remove(entry.getKey(), bucket)) {
+                continue;
+            }
+            for (Session session : bucket.queue) {
+                if (session.bucket != bucket) {
+                    continue; // сессия уже перенесена в другую корзину
+                }
+                if (session.expiresAtMillis <= nowMillis) {
+                    if (sessions.remove(session.token, session)) {
+                        forgetUserSession(session);
+                        removed++;
+                    }
+                } else if (sessions.get(session.token) == session) {
+                    // срок продлён — переносим сессию в её текущую корзину
+                    link(session);
+                }
+            }
+        }
+        expired.add(removed);
+        updateEvictionRate(nowMillis);
+        return removed;
+    }
+
+    /**
+     * @return число сессий в хранилище
+     */
+    @Override
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Сводка для администратора: размер, лимиты и счётчики вытеснений.
+     */
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "heap");
+        stats.put("size", sessions.size());
+        stats.put("users", byUser.size());
+        stats.put("maxPerUser", maxPerUser);
+        stats.put("maxTotal", maxTotal);
+        stats.put("issued", issued.sum());
+        stats.put("expired", expired.sum());
+        stats.put("evictedPerUser", evictedPerUser.sum());
+        stats.put("evictedTotal", evictedTotal.sum());
+        stats.put("revoked", revoked.sum());
+        stats.put("bucketEntries", buckets.values().stream().mapToLong(b -> b.entries.get()).sum());
+        stats.put("bucketCompactions", compactions.sum());
+        stats.put("evictionsPerMinute", Math.round(evictionsPerMinute * 10) / 10.0);
+        return stats;
+    }
+
+    /**
+     * Кладёт сессию в корзину её текущего срока истечения.
+     */
+    private void link(Session session) {
+        // корзина с номером N содержит сессии, истекающие в [N*шаг, (N+1)*шаг)
+        Bucket bucket = buckets.computeIfAbsent(session.expiresAtMillis / bucketMillis, Bucket::new);
+        session.bucket = bucket;
+        bucket.queue.add(session);
+        bucket.entries.incrementAndGet();
+    }
+
+    /**
+     * Отмечает досрочно удалённую сессию мёртвой записью её корзины и сжимает корзину,
+     * если мёртвых записей набралось не меньше половины.
+     */
+    private void unlink(Session session) {
+        Bucket bucket = session.bucket;
+        if (bucket == null) {
+            return;
+        }
+        int dead = bucket.dead.incrementAndGet();
+        if (dead >= COMPACT_MIN_DEAD && dead * 2 >= bucket.entries.get()) {
+            compact(bucket);
+        }
+    }
+
+    private void compact(Bucket bucket) {
+        if (!bucket.compacting.compareAndSet(false, true)) {
+            return; // корзину уже сжимает другой поток
+        }
+        try {
+            int[] dropped = new int[1];
+            bucket.queue.removeIf(s -> {
+                boolean dead = s.bucket != bucket || sessions.get(s.token) != s;
+                if (dead) {
+                    dropped[0]++;
+                }
+                return dead;
+            });
+            bucket.entries.addAndGet(-dropped[0]);
+            bucket.dead.addAndGet(-dropped[0]);
+            compactions.increment();
+        } finally {
+            bucket.compacting.set(false);
+        }
+    }
+
+    private void forgetUserSession(Session session) {
+        byUser.computeIfPresent(session.user.getId(), (id, deque) -> {
+            deque.remove(session);
+            return deque.isEmpty() ? null : deque;
+        });
+    }
+
+    /**
+     * Вытесняет сессии, ближайшие к истечению, пока размер не вернётся в лимит.
+     */
+    private void evictForCapacity() {
+        if (!capacityLock.tryLock()) {
+            return; // вытеснение уже выполняет другой поток
+        }
+        try {
+            Iterator<Bucket> it = buckets.values().iterator();
+            while (sessions.size() > maxTotal && it.hasNext()) {
+                Bucket bucket = it.next();
+                Session session;
+                while (sessions.size() > maxTotal && (session = bucket.queue.poll()) != null) {
+                    bucket.entries.decrementAndGet();
+                    if (session.bucket != bucket || sessions.get(session.token) != session) {
+                        bucket.dead.decrementAndGet();
+                    } else if (session.expiresAtMillis / bucketMillis > bucket.number) {
+                        // срок продлён — сессия не из ближайших к истечению, переносим её
+                        link(session);
+                    } else if (sessions.remove(session.token, session)) {
+                        forgetUserSession(session);
+                        evictedTotal.increment();
+                    }
+                }
+            }
+            // при заполненном хранилище вытеснение идёт почти на каждом put: в журнал — не чаще
+            // раза в интервал, с числом вытеснений; точные счётчики — в stats()
+            long now = System.currentTimeMillis();
+            long evicted = evictedTotal.sum();
+            if (evicted > evictedAtCapacityWarn && now - lastCapacityWarnMillis >= WARN_INTERVAL_MILLIS) {
+                logger.warn("Session store at global limit {}: {} oldest sessions evicted since last report",
+                        maxTotal, evicted - evictedAtCapacityWarn);
+                lastCapacityWarnMillis = now;
+                evictedAtCapacityWarn = evicted;
+            }
+        } finally {
+            capacityLock.unlock();
+        }
+    }
+
+    private void updateEvictionRate(long nowMillis) {
+        long evictions = expired.sum() + evictedPerUser.sum() + evictedTotal.sum();
+        long elapsed = nowMillis - lastPurgeMillis;
+        if (elapsed > 0) {
+            evictionsPerMinute = (evictions - evictionsAtLastPurge) * 60_000.0 / elapsed;
+        }
+        evictionsAtLastPurge = evictions;
+        lastPurgeMillis = nowMillis;
+    }
+
+    /** Сессия: пользователь и момент истечения */
+    private static final class Session {
+        final String token;
+        final User user;
+        volatile long expiresAtMillis;
+        /** Корзина, в очереди которой лежит сессия */
+        volatile Bucket bucket;
+
+        Session(String token, User user, long expiresAtMillis) {
+            this.token = token;
+            this.user = user;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /** Корзина: сессии, истекающие в одном интервале, и счётчики для сжатия */
+    private static final class Bucket {
+        final long number;
+        final ConcurrentLinkedQueue<Session> queue = new ConcurrentLinkedQueue<>();
+        /** Записей в очереди, включая мёртвые (приблизительно) */
+        final AtomicInteger entries = new AtomicInteger();
+        /** Записей досрочно удалённых сессий (приблизительно) */
+        final AtomicInteger dead = new AtomicInteger();
+        final AtomicBoolean compacting = new AtomicBoolean();
+
+        Bucket(long number) {
+            this.number = number;
+        }
+    }
+}
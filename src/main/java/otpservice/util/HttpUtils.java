@@ -1,22 +1,114 @@
 package otpservice.util;
 
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class HttpUtils {
 
+    /** Заранее закодированные тела типовых ошибок: сообщение → {"error":"..."} в UTF-8 */
+    private static final Map<String, byte[]> PRE_ENCODED_ERRORS = new ConcurrentHashMap<>();
+
+    static {
+        for (String message : new String[]{
+                "Method Not Allowed",
+                "Content-Type must be application/json",
+                "Internal server error",
+                "Unauthorized",
+                "Forbidden",
+                "Missing or invalid Authorization header",
+                "Invalid or expired token",
+                "Invalid or expired refresh token",
+                "Invalid or expired code",
+                "Service overloaded, retry later",
+                "Too many requests",
+                "OTP send limit exceeded, retry later",
+                "Request body too large",
+                "Not Found"}) {
+            PRE_ENCODED_ERRORS.put(message, encodeError(message));
+        }
+    }
+
     // Отправить JSON-ответ с указанным статусом
     public static void sendJsonResponse(HttpExchange exch, int status, String json) throws IOException {
+        sendJsonBytes(exch, status, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Отправить готовое JSON-тело (байты UTF-8) с указанным статусом;
+    // тела больше порога сжимаются, если клиент поддерживает gzip/deflate
+    public static void sendJsonBytes(HttpExchange exch, int status, byte[] body) throws IOException {
         exch.getResponseHeaders().set("Content-Type", "application/json");
-        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
-        exch.sendResponseHeaders(status, bytes.length);
+        if (ResponseCompression.worthCompressing(body.length)) {
+            ResponseCompression.Encoding encoding = negotiateEncoding(exch);
+            if (encoding != ResponseCompression.Encoding.IDENTITY) {
+                body = ResponseCompression.compress(body, encoding);
+            }
+        }
+        exch.sendResponseHeaders(status, body.length);
         try (OutputStream os = exch.getResponseBody()) {
-            os.write(bytes);
+            os.write(body);
+        }
+    }
+
+    /**
+     * Сериализует объект потоково прямо в тело ответа (chunked transfer),
+     * без промежуточных String и byte[].
+     * После отправки заголовков ошибку сериализации уже нельзя вернуть кодом статуса —
+     * в этом случае соединение будет закрыто сервером.
+     */
+    public static void sendJson(HttpExchange exch, int status, Object body) throws IOException {
+        exch.getResponseHeaders().set("Content-Type", "application/json");
+        ResponseCompression.Encoding encoding = negotiateEncoding(exch);
+        exch.sendResponseHeaders(status, 0);
+        try (OutputStream os = ResponseCompression.wrap(exch.getResponseBody(), encoding)) {
+            JsonUtil.writeJson(os, body);
+        }
+    }
+
+    // То же, что sendJson, но с заранее построенным ObjectWriter
+    public static void sendJson(HttpExchange exch, int status, ObjectWriter writer, Object body) throws IOException {
+        exch.getResponseHeaders().set("Content-Type", "application/json");
+        ResponseCompression.Encoding encoding = negotiateEncoding(exch);
+        exch.sendResponseHeaders(status, 0);
+        try (OutputStream os = ResponseCompression.wrap(exch.getResponseBody(), encoding)) {
+            JsonUtil.writeJson(os, writer, body);
         }
     }
 
+    // Выбирает кодировку ответа по Accept-Encoding и выставляет Content-Encoding, Vary и ETag представления
+    private static ResponseCompression.Encoding negotiateEncoding(HttpExchange exch) {
+        exch.getResponseHeaders().set("Vary", "Accept-Encoding");
+        ResponseCompression.Encoding encoding =
+                ResponseCompression.negotiate(exch.getRequestHeaders().getFirst("Accept-Encoding"));
+        if (encoding != ResponseCompression.Encoding.IDENTITY) {
+            exch.getResponseHeaders().set("Content-Encoding", encoding.getToken());
+            String etag = exch.getResponseHeaders().getFirst("ETag");
+            if (etag != null) {
+                exch.getResponseHeaders().set("ETag", ResponseCompression.etagFor(etag, encoding));
+            }
+        }
+        return encoding;
+    }
+
+    // Отправить 304 Not Modified с теми же ETag и Vary, что и у ответа 200 с телом длины bodyLength
+    // (sendJsonBytes): валидатор подтверждает именно то представление, которое получил бы клиент
+    public static void sendNotModified(HttpExchange exch, int bodyLength) throws IOException {
+        if (ResponseCompression.worthCompressing(bodyLength)) {
+            exch.getResponseHeaders().set("Vary", "Accept-Encoding");
+            ResponseCompression.Encoding encoding =
+                    ResponseCompression.negotiate(exch.getRequestHeaders().getFirst("Accept-Encoding"));
+            String etag = exch.getResponseHeaders().getFirst("ETag");
+            if (etag != null) {
+                exch.getResponseHeaders().set("ETag", ResponseCompression.etagFor(etag, encoding));
+            }
+        }
+        exch.sendResponseHeaders(304, -1);
+    }
+
     // Отправить ответ без тела (например, 204)
     public static void sendEmptyResponse(HttpExchange exch, int status) throws IOException {
         exch.sendResponseHeaders(status, -1);
@@ -24,9 +116,20 @@ public class HttpUtils {
 
     // Отправить JSON-ошибку с сообщением
     public static void sendError(HttpExchange exch, int status, String message) throws IOException {
-        String errorJson = String.format("{\"error\":\"%s\"}", message);
-        sendJsonResponse(exch, status, errorJson);
+        byte[] body = PRE_ENCODED_ERRORS.get(message);
+        if (body == null) {
+            body = encodeError(message);
+        }
+        sendJsonBytes(exch, status, body);
     }
-}
 
+    // Кодирует {"error":"message"} с корректным экранированием
+    private static byte[] encodeError(String message) {
+        try {
+            return JsonUtil.toJsonBytes(Map.of("error", message == null ? "" : message));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode error body", e);
+        }
+    }
+}
 
@@ -0,0 +1,85 @@
+package otpservice.util;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * Неизменяемая хеш-таблица с ключами int без упаковки в Integer.
+ * <p>
+ * Открытая адресация с линейным пробированием, ёмкость — степень двойки не меньше удвоенного
+ * числа элементов. Таблица строится один раз и затем читается из любых потоков без блокировок;
+ * для изменения строится новая таблица и подменяется целиком.
+ * </p>
+ */
+public final class ImmutableIntMap<V> {
+    private final int[] keys;
+    private final Object[] values;
+    private final int mask;
+    private final int size;
+
+    private ImmutableIntMap(int[] keys, Object[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.size = size;
+    }
+
+    /**
+     * Строит таблицу по списку значений.
+     * @param items значения
+     * @param keyOf ключ значения; при повторе ключа остаётся последнее значение
+     */
+    public static <V> ImmutableIntMap<V> of(Iterable<? extends V> items, ToIntFunction<? super V> keyOf) {
+        int count = 0;
+        for (V ignored : items) {
+            count++;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, count * 2 - 1)) << 1;
+        int[] keys = new int[capacity];
+        Object[] values = new Object[capacity];
+        int mask = capacity - 1;
+        int size = 0;
+        for (V item : items) {
+            int key = keyOf.applyAsInt(item);
+            int slot = mix(key) & mask;
+            while (values[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == null) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = item;
+        }
+        return new ImmutableIntMap<>(keys, values, size);
+    }
+
+    /**
+     * @return значение по ключу или null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = mix(key) & mask;
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) {
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Перемешивание битов ключа (как в HashMap), чтобы близкие номера не шли подряд */
+    private static int mix(int key) {
+        int h = key * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,28 +1,139 @@
 package otpservice.util;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamReadConstraints;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
 
+/**
+ * Утиль сериализации JSON.
+ * <p>
+ * Для каждого типа один раз строятся ObjectReader/ObjectWriter (кэш на ClassValue),
+ * контроллеры держат их в статических полях для своих DTO. При
+ * {@code json.blackbird.enabled=true} {@link #configure(Properties)} подключает модуль
+ * Blackbird, заменяющий рефлексию на сгенерированные MethodHandle-аксессоры.
+ * </p>
+ */
 public class JsonUtil {
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Logger logger = LoggerFactory.getLogger(JsonUtil.class);
+
+    private static final ObjectMapper MAPPER = createMapper();
+
+    private static final ClassValue<ObjectReader> READERS = new ClassValue<>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+            return MAPPER.readerFor(type);
+        }
+    };
+
+    private static final ClassValue<ObjectWriter> WRITERS = new ClassValue<>() {
+        @Override
+        protected ObjectWriter computeValue(Class<?> type) {
+            return MAPPER.writerFor(type);
+        }
+    };
+
+    private static final ClassValue<ObjectWriter> LIST_WRITERS = new ClassValue<>() {
+        @Override
+        protected ObjectWriter computeValue(Class<?> elementType) {
+            return MAPPER.writerFor(MAPPER.getTypeFactory().constructCollectionType(List.class, elementType));
+        }
+    };
+
+    private static ObjectMapper createMapper() {
+        // Ограничения потокового разбора тел запросов: глубина вложенности, длина строк и чисел
+        JsonFactory factory = JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder()
+                        .maxNestingDepth(32)
+                        .maxStringLength(64 * 1024)
+                        .maxNumberLength(32)
+                        .build())
+                .build();
+        return new ObjectMapper(factory);
+    }
+
+    /**
+     * Загружает настройки {@code json.*} из application.properties.
+     * Вызывается при старте до создания контроллеров: ObjectReader/ObjectWriter, построенные
+     * раньше, модуль Blackbird не используют.
+     */
+    public static synchronized void configure(Properties config) {
+        if (Boolean.parseBoolean(config.getProperty("json.blackbird.enabled", "false").trim())) {
+            // повторная регистрация игнорируется (MapperFeature.IGNORE_DUPLICATE_MODULE_REGISTRATIONS)
+            MAPPER.registerModule(new BlackbirdModule());
+            logger.info("Jackson Blackbird module enabled");
+        }
+    }
 
+    // Парсит тело запроса в дерево JSON напрямую из потока, без промежуточной строки
     public static JsonNode getRequestBody(InputStream is) throws IOException {
-        String requestBody = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        return MAPPER.readTree(is);
+    }
+
+    // Возвращает заранее построенный ObjectReader для указанного класса
+    public static ObjectReader readerFor(Class<?> clazz) {
+        return READERS.get(clazz);
+    }
 
-        // Парсинг JSON с помощью Jackson
-        return MAPPER.readTree(requestBody);
+    // Возвращает заранее построенный ObjectWriter для указанного класса
+    public static ObjectWriter writerFor(Class<?> clazz) {
+        return WRITERS.get(clazz);
+    }
+
+    // Возвращает заранее построенный ObjectWriter для List<elementType>
+    public static ObjectWriter listWriterFor(Class<?> elementType) {
+        return LIST_WRITERS.get(elementType);
     }
 
     // Парсит JSON-тело запроса в объект указанного класса
     public static <T> T fromJson(InputStream is, Class<T> clazz) throws IOException {
-        return MAPPER.readValue(is, clazz);
+        return READERS.get(clazz).readValue(is);
+    }
+
+    // Парсит JSON-тело запроса готовым ObjectReader
+    public static <T> T fromJson(InputStream is, ObjectReader reader) throws IOException {
+        return reader.readValue(is);
     }
 
     // Сериализует объект в JSON-строку
     public static String toJson(Object obj) throws IOException {
         return MAPPER.writeValueAsString(obj);
     }
-}
\ No newline at end of file
+
+    // Сериализует объект в JSON-байты UTF-8 (без промежуточной строки)
+    public static byte[] toJsonBytes(Object obj) throws IOException {
+        return MAPPER.writeValueAsBytes(obj);
+    }
+
+    // Сериализует объект в JSON-байты UTF-8 готовым ObjectWriter
+    public static byte[] toJsonBytes(ObjectWriter writer, Object obj) throws IOException {
+        return writer.writeValueAsBytes(obj);
+    }
+
+    // Сериализует объект потоково в выходной поток через JsonGenerator
+    public static void writeJson(OutputStream os, Object obj) throws IOException {
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(os, JsonEncoding.UTF8)) {
+            MAPPER.writeValue(generator, obj);
+        }
+    }
+
+    // Сериализует объект потоково готовым ObjectWriter
+    public static void writeJson(OutputStream os, ObjectWriter writer, Object obj) throws IOException {
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(os, JsonEncoding.UTF8)) {
+            writer.writeValue(generator, obj);
+        }
+    }
+}
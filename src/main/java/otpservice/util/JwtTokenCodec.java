@@ -0,0 +1,235 @@
+package otpservice.util;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.model.User;
+import otpservice.model.UserRole;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Выпуск и проверка подписанных токенов JWT (режим {@code token.mode=jwt}).
+ * <p>
+ * Токен несёт id пользователя (sub), логин (name) и роль (role), поэтому проверка не требует
+ * обращения к хранилищу и работает на любой реплике с теми же ключами. Ключи описываются в
+ * application.properties и различаются по {@code kid} в заголовке токена:
+ * <pre>
+ * token.jwt.keys=k1,k2                      # все ключи, принимаемые при проверке
+ * token.jwt.activeKid=k2                    # ключ, которым подписываются новые токены
+ * token.jwt.key.k1.algorithm=HS256          # HS256 | ES256
+ * token.jwt.key.k1.secret=...               # HS256: секрет в Base64
+ * token.jwt.key.k2.algorithm=ES256
+ * token.jwt.key.k2.publicKey=...            # ES256: X.509 в Base64
+ * token.jwt.key.k2.privateKey=...           # ES256: PKCS#8 в Base64 (только для активного ключа)
+ * </pre>
+ * Верификаторы строятся один раз на каждый ключ. Для ротации новый ключ добавляется в
+ * {@code token.jwt.keys} и делается активным; старый остаётся в списке, пока не истекут его токены.
+ * </p>
+ * <p>
+ * Токен присылает клиент, и проверка идёт на каждом запросе, поэтому отказы пишутся в лог
+ * только на уровне debug, а их число по причинам доступно в {@link #stats()}.
+ * </p>
+ */
+public class JwtTokenCodec {
+    private static final Logger logger = LoggerFactory.getLogger(JwtTokenCodec.class);
+
+    private static final String CLAIM_NAME = "name";
+    private static final String CLAIM_ROLE = "role";
+    private static final String CLAIM_TYPE = "typ";
+
+    /** Тип токена доступа; токены без утверждения typ считаются токенами доступа */
+    public static final String TYPE_ACCESS = "access";
+    /** Тип одноразового refresh-токена, принимаемого только в POST /token/refresh */
+    public static final String TYPE_REFRESH = "refresh";
+
+    private final String issuer;
+    private final String activeKid;
+    private final Algorithm signer;
+    /** kid → готовый верификатор (подпись, iss, exp) */
+    private final Map<String, JWTVerifier> verifiers;
+
+    private final LongAdder missingKid = new LongAdder();
+    private final LongAdder unknownKid = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder malformedClaims = new LongAdder();
+
+    private JwtTokenCodec(String issuer, String activeKid, Algorithm signer, Map<String, JWTVerifier> verifiers) {
+        this.issuer = issuer;
+        this.activeKid = activeKid;
+        this.signer = signer;
+        this.verifiers = verifiers;
+    }
+
+    /**
+     * Загружает ключи из application.properties.
+     * @throws IllegalArgumentException если ключи описаны неверно
+     */
+    public static JwtTokenCodec fromProperties(Properties config) {
+        String issuer = config.getProperty("token.jwt.issuer", "otp-service");
+        long leewaySeconds = Long.parseLong(config.getProperty("token.jwt.leewaySeconds", "5"));
+        String activeKid = config.getProperty("token.jwt.activeKid", "").trim();
+
+        Map<String, JWTVerifier> verifiers = new HashMap<>();
+        Algorithm signer = null;
+        for (String kid : config.getProperty("token.jwt.keys", "").split(",")) {
+            kid = kid.trim();
+            if (kid.isEmpty()) {
+                continue;
+            }
+            Algorithm algorithm = loadAlgorithm(config, kid, kid.equals(activeKid));
+            verifiers.put(kid, JWT.require(algorithm)
+                    .withIssuer(issuer)
+                    .acceptLeeway(leewaySeconds)
+                    .build());
+            if (kid.equals(activeKid)) {
+                signer = algorithm;
+            }
+        }
+        if (signer == null) {
+            throw new IllegalArgumentException("token.jwt.activeKid must name one of token.jwt.keys");
+        }
+        logger.info("JWT keys loaded: {}, active kid={}", verifiers.keySet(), activeKid);
+        return new JwtTokenCodec(issuer, activeKid, signer, Map.copyOf(verifiers));
+    }
+
+    /**
+     * Выпускает токен активным ключом.
+     * @param user      пользователь
+     * @param tokenId   уникальный идентификатор токена (jti)
+     * @param expiresAt момент истечения, мс от эпохи
+     * @param type      {@link #TYPE_ACCESS} или {@link #TYPE_REFRESH}
+     */
+    public String issue(User user, String tokenId, long expiresAt, String type) {
+        return JWT.create()
+                .withKeyId(activeKid)
+                .withIssuer(issuer)
+                .withJWTId(tokenId)
+                .withSubject(String.valueOf(user.getId()))
+                .withClaim(CLAIM_NAME, user.getUsername())
+                .withClaim(CLAIM_ROLE, user.getRole().name())
+                .withClaim(CLAIM_TYPE, type)
+                .withIssuedAt(new Date())
+                .withExpiresAt(new Date(expiresAt))
+                .sign(signer);
+    }
+
+    /**
+     * Проверяет подпись, издателя и срок действия токена.
+     * @return проверенный токен или null, если токен недействителен
+     */
+    public DecodedJWT verify(String token) {
+        try {
+            DecodedJWT decoded = JWT.decode(token);
+            if (decoded.getKeyId() == null) {
+                // Map.copyOf не допускает null-ключей: get(null) бросил бы NullPointerException
+                missingKid.increment();
+                logger.debug("JWT rejected: missing kid");
+                return null;
+            }
+            JWTVerifier verifier = verifiers.get(decoded.getKeyId());
+            if (verifier == null) {
+                unknownKid.increment();
+                logger.debug("JWT rejected: unknown kid");
+                return null;
+            }
+            return verifier.verify(decoded);
+        } catch (JWTVerificationException e) {
+            invalid.increment();
+            logger.debug("JWT rejected: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return true, если проверенный токен — refresh-токен
+     */
+    public static boolean isRefresh(DecodedJWT jwt) {
+        return TYPE_REFRESH.equals(jwt.getClaim(CLAIM_TYPE).asString());
+    }
+
+    /**
+     * Восстанавливает пользователя из утверждений проверенного токена
+     * (без хеша пароля и email).
+     * @return пользователь или null, если утверждения некорректны
+     */
+    public User toUser(DecodedJWT jwt) {
+        try {
+            return new User(Long.valueOf(jwt.getSubject()), jwt.getClaim(CLAIM_NAME).asString(), null, null,
+                    UserRole.valueOf(jwt.getClaim(CLAIM_ROLE).asString()));
+        } catch (RuntimeException e) {
+            malformedClaims.increment();
+            logger.debug("JWT rejected: malformed claims");
+            return null;
+        }
+    }
+
+    /**
+     * Счётчики отказов по причинам: нет kid, неизвестный kid, подпись/издатель/срок,
+     * некорректные утверждения.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jwtRejectedMissingKid", missingKid.sum());
+        stats.put("jwtRejectedUnknownKid", unknownKid.sum());
+        stats.put("jwtRejectedInvalid", invalid.sum());
+        stats.put("jwtRejectedMalformedClaims", malformedClaims.sum());
+        return stats;
+    }
+
+    private static Algorithm loadAlgorithm(Properties config, String kid, boolean signing) {
+        String prefix = "token.jwt.key." + kid + ".";
+        String type = config.getProperty(prefix + "algorithm", "HS256").trim().toUpperCase(Locale.ROOT);
+        try {
+            switch (type) {
+                case "HS256":
+                    String secret = required(config, prefix + "secret");
+                    byte[] key = Base64.getDecoder().decode(secret.getBytes(StandardCharsets.US_ASCII));
+                    if (key.length < 32) {
+                        throw new IllegalArgumentException(prefix + "secret must be at least 256 bits");
+                    }
+                    return Algorithm.HMAC256(key);
+                case "ES256":
+                    KeyFactory factory = KeyFactory.getInstance("EC");
+                    ECPublicKey publicKey = (ECPublicKey) factory.generatePublic(new X509EncodedKeySpec(
+                            Base64.getDecoder().decode(required(config, prefix + "publicKey"))));
+                    ECPrivateKey privateKey = null;
+                    if (signing) {
+                        privateKey = (ECPrivateKey) factory.generatePrivate(new PKCS8EncodedKeySpec(
+                                Base64.getDecoder().decode(required(config, prefix + "privateKey"))));
+                    }
+                    return Algorithm.ECDSA256(publicKey, privateKey);
+                default:
+                    throw new IllegalArgumentException("Unsupported " + prefix + "algorithm: " + type);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid key material for kid " + kid, e);
+        }
+    }
+
+    private static String required(Properties config, String key) {
+        String value = config.getProperty(key);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing " + key);
+        }
+        return value.trim();
+    }
+}
@@ -0,0 +1,59 @@
+package otpservice.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Поток, ограничивающий число прочитанных байт.
+ * При попытке прочитать больше лимита бросает {@link PayloadTooLargeException},
+ * не буферизуя тело целиком (важно для chunked-запросов без Content-Length).
+ */
+public class LimitedInputStream extends FilterInputStream {
+    private final long limit;
+    private long count;
+
+    public LimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        // Читаем не больше, чем осталось до лимита + 1 байт, чтобы обнаружить превышение
+        long allowed = limit - count + 1;
+        int n = super.read(b, off, (int) Math.min(len, allowed));
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, limit - count + 1));
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long n) throws PayloadTooLargeException {
+        count += n;
+        if (count > limit) {
+            throw new PayloadTooLargeException(limit);
+        }
+    }
+}
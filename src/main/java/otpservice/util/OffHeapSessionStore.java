@@ -0,0 +1,439 @@
+package otpservice.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otpservice.model.User;
+import otpservice.model.UserRole;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Хранилище сессий вне кучи на Foreign Memory API ({@link MemorySegment}).
+ * <p>
+ * Таблица с открытой адресацией и линейным пробированием; ключ — 128-битное значение
+ * UUID-токена. Слот занимает 32 байта: старшие и младшие 64 бита токена, id пользователя
+ * и упакованные время истечения (секунды от эпохи) и роль. Объект {@link User} не хранится:
+ * {@link #get(String, long)} возвращает пользователя только с id и ролью — этого достаточно
+ * AuthFilter и контроллерам, остальные поля при необходимости загружаются из БД по id.
+ * </p>
+ * <p>
+ * Чтение — оптимистичное ({@link StampedLock#tryOptimisticRead()}), без блокировок и без
+ * объектов на каждую сессию в куче; запись — под единственной блокировкой записи.
+ * Удаление — обратным сдвигом (backward shift), поэтому «надгробий» нет и цепочки
+ * пробирования не деградируют. Ёмкость фиксирована ({@code token.offheap.capacity});
+ * при заполнении на 75% новая сессия вытесняет ближайшую к истечению среди соседних слотов.
+ * Ограничение числа сессий на пользователя в этой реализации не поддерживается.
+ * </p>
+ */
+public class OffHeapSessionStore implements SessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapSessionStore.class);
+
+    private static final long SLOT_BYTES = 32;
+    private static final long OFFSET_HI = 0;
+    private static final long OFFSET_LO = 8;
+    private static final long OFFSET_USER = 16;
+    private static final long OFFSET_META = 24;
+    /** Число соседних слотов, среди которых ищется жертва вытеснения */
+    private static final int EVICTION_WINDOW = 16;
+    private static final int OPTIMISTIC_ATTEMPTS = 3;
+    /** Не чаще одного предупреждения о вытеснении за минуту */
+    private static final long WARN_INTERVAL_MILLIS = 60_000;
+    private static final UserRole[] ROLES = UserRole.values();
+
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment table;
+    private final long mask;
+    private final long capacity;
+    private final long maxLive;
+    private final StampedLock lock = new StampedLock();
+
+    private volatile int live;
+    /** Память освобождена; изменяется под блокировкой записи */
+    private boolean closed;
+    /** Последнее предупреждение о вытеснении и число вытеснений на тот момент; под блокировкой записи */
+    private long lastEvictionWarnMillis;
+    private long evictedAtWarn;
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder revoked = new LongAdder();
+
+    /**
+     * @param requestedCapacity число слотов (округляется вверх до степени двойки)
+     */
+    public OffHeapSessionStore(long requestedCapacity) {
+        this.capacity = Long.highestOneBit(Math.max(16, requestedCapacity - 1)) << 1;
+        this.mask = capacity - 1;
+        this.maxLive = capacity / 4 * 3;
+        this.table = arena.allocate(capacity * SLOT_BYTES, 64);
+        table.fill((byte) 0);
+        logger.info("Off-heap session store allocated: {} slots, {} MB", capacity, capacity * SLOT_BYTES >> 20);
+    }
+
+    @Override
+    public void put(String token, User user, long expiresAtMillis) {
+        long hi = TokenBits.high(token);
+        long lo = TokenBits.low(token);
+        if (hi == 0 && lo == 0) {
+            throw new IllegalArgumentException("Off-heap session store accepts only UUID tokens");
+        }
+        long meta = meta(expiresAtMillis, user.getRole());
+        long stamp = lock.writeLock();
+        try {
+            if (live >= maxLive) {
+                evictNear(slotOf(hi, lo));
+            }
+            long slot = slotOf(hi, lo);
+            while (true) {
+                long base = slot * SLOT_BYTES;
+                long currentMeta = table.get(ValueLayout.JAVA_LONG, base + OFFSET_META);
+                if (currentMeta == 0) {
+                    live++;
+                    break;
+                }
+                if (table.get(ValueLayout.JAVA_LONG, base + OFFSET_HI) == hi
+                        && table.get(ValueLayout.JAVA_LONG, base + OFFSET_LO) == lo) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            long base = slot * SLOT_BYTES;
+            table.set(ValueLayout.JAVA_LONG, base + OFFSET_HI, hi);
+            table.set(ValueLayout.JAVA_LONG, base + OFFSET_LO, lo);
+            table.set(ValueLayout.JAVA_LONG, base + OFFSET_USER, user.getId());
+            table.set(ValueLayout.JAVA_LONG, base + OFFSET_META, meta);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        issued.increment();
+    }
+
+    @Override
+    public User get(String token, long nowMillis) {
+        return lookup(token, 0, nowMillis, 0);
+    }
+
+    @Override
+    public User touch(String token, long nowMillis, long ttlMillis) {
+        return lookup(token, 0, nowMillis, ttlMillis);
+    }
+
+    /**
+     * Поиск сессии с разбором токена на месте, без подстроки; при {@code ttlMillis > 0}
+     * продлевает сессию, у которой осталось меньше половины срока
+     * (блокировка записи берётся только в этом случае).
+     */
+    @Override
+    public User lookup(String source, int offset, long nowMillis, long ttlMillis) {
+        long hi = TokenBits.high(source, offset);
+        long lo = TokenBits.low(source, offset);
+        if (hi == 0 && lo == 0) {
+            return null;
+        }
+        long nowSeconds = nowMillis / 1000;
+        long base = -1;
+        long userId = 0;
+        long meta = 0;
+        boolean valid = false;
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS && !valid; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                continue;
+            }
+            base = find(hi, lo);
+            userId = base < 0 ? 0 : table.get(ValueLayout.JAVA_LONG, base + OFFSET_USER);
+            meta = base < 0 ? 0 : table.get(ValueLayout.JAVA_LONG, base + OFFSET_META);
+            valid = lock.validate(stamp);
+        }
+        if (!valid) {
+            // непрерывный поток записей — читаем под блокировкой чтения
+            long stamp = lock.readLock();
+            try {
+                base = find(hi, lo);
+                userId = base < 0 ? 0 : table.get(ValueLayout.JAVA_LONG, base + OFFSET_USER);
+                meta = base < 0 ? 0 : table.get(ValueLayout.JAVA_LONG, base + OFFSET_META);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        User user = toUser(base, userId, meta, nowSeconds);
+        if (user != null && ttlMillis > 0 && ((meta >>> 8) - nowSeconds) * 1000 < ttlMillis / 2) {
+            extend(hi, lo, nowMillis + ttlMillis);
+        }
+        return user;
+    }
+
+    private void extend(long hi, long lo, long expiresAtMillis) {
+        long stamp = lock.writeLock();
+        try {
+            long base = find(hi, lo);
+            if (base >= 0) {
+                long meta = table.get(ValueLayout.JAVA_LONG, base + OFFSET_META);
+                table.set(ValueLayout.JAVA_LONG, base + OFFSET_META,
+                        (Math.max(1, expiresAtMillis / 1000) << 8) | (meta & 0xff));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(String token) {
+        long hi = TokenBits.high(token);
+        long lo = TokenBits.low(token);
+        if (hi == 0 && lo == 0) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            long base = find(hi, lo);
+            if (base < 0) {
+                return false;
+            }
+            delete(base / SLOT_BYTES);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        revoked.increment();
+        return true;
+    }
+
+    @Override
+    public int removeUser(long userId) {
+        int removed = 0;
+        long stamp = lock.writeLock();
+        try {
+            long slot = 0;
+            while (slot < capacity) {
+                long base = slot * SLOT_BYTES;
+                if (table.get(ValueLayout.JAVA_LONG, base + OFFSET_META) != 0
+                        && table.get(ValueLayout.JAVA_LONG, base + OFFSET_USER) == userId) {
+                    delete(slot);
+                    removed++;
+                    // на место удалённого мог сдвинуться следующий слот — проверяем его ещё раз
+                } else {
+                    slot++;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        revoked.add(removed);
+        return removed;
+    }
+
+    @Override
+    public int purgeExpired(long nowMillis) {
+        long nowSeconds = nowMillis / 1000;
+        int removed = 0;
+        long slot = 0;
+        // проход по таблице порциями, чтобы не держать блокировку записи долго
+        while (slot < capacity) {
+            long end = Math.min(capacity, slot + 4096);
+            long stamp = lock.writeLock();
+            try {
+                while (slot < end) {
+                    long meta = table.get(ValueLayout.JAVA_LONG, slot * SLOT_BYTES + OFFSET_META);
+                    if (meta != 0 && (meta >>> 8) <= nowSeconds) {
+                        delete(slot);
+                        removed++;
+                    } else {
+                        slot++;
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        expired.add(removed);
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return live;
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "offheap");
+        stats.put("size", live);
+        stats.put("capacity", capacity);
+        stats.put("offHeapBytes", table.byteSize());
+        stats.put("issued", issued.sum());
+        stats.put("expired", expired.sum());
+        stats.put("evictedTotal", evicted.sum());
+        stats.put("revoked", revoked.sum());
+        return stats;
+    }
+
+    /**
+     * Освобождает память таблицы. Повторный вызов ничего не делает: TokenManager закрывает
+     * хранилище и при остановке, и при повторной настройке.
+     */
+    @Override
+    public void close() {
+        long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            arena.close();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** @return смещение слота с ключом или -1 */
+    private long find(long hi, long lo) {
+        long slot = slotOf(hi, lo);
+        for (long probes = 0; probes < capacity; probes++) {
+            long base = slot * SLOT_BYTES;
+            if (table.get(ValueLayout.JAVA_LONG, base + OFFSET_META) == 0) {
+                return -1;
+            }
+            if (table.get(ValueLayout.JAVA_LONG, base + OFFSET_HI) == hi
+                    && table.get(ValueLayout.JAVA_LONG, base + OFFSET_LO) == lo) {
+                return base;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Удаляет слот и сдвигает назад следующие элементы цепочки (под блокировкой записи).
+     */
+    private void delete(long slot) {
+        long hole = slot;
+        long next = (hole + 1) & mask;
+        while (true) {
+            long nextBase = next * SLOT_BYTES;
+            if (table.get(ValueLayout.JAVA_LONG, nextBase + OFFSET_META) == 0) {
+                break;
+            }
+            long home = slotOf(table.get(ValueLayout.JAVA_LONG, nextBase + OFFSET_HI),
+                    table.get(ValueLayout.JAVA_LONG, nextBase + OFFSET_LO));
+            // элемент можно перенести в «дыру», если его домашний слот не лежит в (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                MemorySegment.copy(table, nextBase, table, hole * SLOT_BYTES, SLOT_BYTES);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table.asSlice(hole * SLOT_BYTES, SLOT_BYTES).fill((byte) 0);
+        live--;
+    }
+
+    /**
+     * Освобождает место: удаляет из окна соседних слотов сессию, ближайшую к истечению.
+     */
+    private void evictNear(long slot) {
+        long victim = -1;
+        long victimMeta = Long.MAX_VALUE;
+        for (int i = 0; i < EVICTION_WINDOW; i++) {
+            long candidate = (slot + i) & mask;
+            long meta = table.get(ValueLayout.JAVA_LONG, candidate * SLOT_BYTES + OFFSET_META);
+            if (meta != 0 && meta < victimMeta) {
+                victim = candidate;
+                victimMeta = meta;
+            }
+        }
+        if (victim >= 0) {
+            delete(victim);
+            evicted.increment();
+            long now = System.currentTimeMillis();
+            if (now - lastEvictionWarnMillis >= WARN_INTERVAL_MILLIS) {
+                long total = evicted.sum();
+                logger.warn("Off-heap session store is {}% full: {} sessions evicted since last report",
+                        live * 100 / capacity, total - evictedAtWarn);
+                lastEvictionWarnMillis = now;
+                evictedAtWarn = total;
+            }
+        }
+    }
+
+    private long slotOf(long hi, long lo) {
+        long h = hi ^ Long.rotateLeft(lo, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h & mask;
+    }
+
+    private static long meta(long expiresAtMillis, UserRole role) {
+        return (Math.max(1, expiresAtMillis / 1000) << 8) | role.ordinal();
+    }
+
+    private static User toUser(long base, long userId, long meta, long nowSeconds) {
+        if (base < 0 || meta == 0 || (meta >>> 8) <= nowSeconds) {
+            return null;
+        }
+        UserRole role = ROLES[(int) (meta & 0xff)];
+        return new User(userId, null, null, null, role);
+    }
+
+    /**
+     * Разбор UUID-токена (8-4-4-4-12 шестнадцатеричных цифр) в два long без аллокаций.
+     * Для некорректной строки обе половины равны 0.
+     */
+    static final class TokenBits {
+        private TokenBits() { /* запрет создания экземпляров */ }
+
+        static long high(String token) {
+            return high(token, 0);
+        }
+
+        static long low(String token) {
+            return low(token, 0);
+        }
+
+        /** Старшая половина токена, записанного в строке начиная с {@code offset} */
+        static long high(String source, int offset) {
+            if (!wellFormed(source, offset)) {
+                return 0;
+            }
+            return hex(source, offset, offset + 8) << 32
+                    | hex(source, offset + 9, offset + 13) << 16
+                    | hex(source, offset + 14, offset + 18);
+        }
+
+        /** Младшая половина токена, записанного в строке начиная с {@code offset} */
+        static long low(String source, int offset) {
+            if (!wellFormed(source, offset)) {
+                return 0;
+            }
+            return hex(source, offset + 19, offset + 23) << 48 | hex(source, offset + 24, offset + 36);
+        }
+
+        private static boolean wellFormed(String source, int offset) {
+            if (source == null || source.length() - offset != 36) {
+                return false;
+            }
+            for (int i = 0; i < 36; i++) {
+                char c = source.charAt(offset + i);
+                boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+                if (dash ? c != '-' : Character.digit(c, 16) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long hex(String s, int from, int to) {
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                value = value << 4 | Character.digit(s.charAt(i), 16);
+            }
+            return value;
+        }
+    }
+}
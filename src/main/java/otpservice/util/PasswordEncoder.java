@@ -3,15 +3,25 @@ package otpservice.util;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Утиль для хеширования паролей и проверки совпадения raw-пароля с сохранённым хешем.
+ * <p>
+ * Вызывается из потоков {@link PasswordHashingExecutor}; экземпляр MessageDigest
+ * создаётся один раз на поток. Проверка сравнивает байты хеша с hex-строкой напрямую,
+ * не строя промежуточную строку.
+ * </p>
  */
 public final class PasswordEncoder {
     private static final Logger logger = LoggerFactory.getLogger(PasswordEncoder.class);
 
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(PasswordEncoder::newDigest);
+
     // Закрытый конструктор, чтобы нельзя было создать экземпляр
     private PasswordEncoder() {}
 
@@ -22,18 +32,12 @@ public final class PasswordEncoder {
      * @return hex-строка хеша
      */
     public static String hash(String rawPassword) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(rawPassword.getBytes(StandardCharsets.UTF_8));
-            return bytesToHex(hashBytes);
-        } catch (NoSuchAlgorithmException e) {
-            logger.error("Не удалось получить алгоритм SHA-256 для хеширования пароля", e);
-            throw new IllegalStateException("SHA-256 algorithm not available", e);
-        }
+        return HEX.formatHex(digest(rawPassword));
     }
 
     /**
      * Проверяет, что rawPassword после хеширования совпадает с уже сохранённым хешем.
+     * Сравнение выполняется за постоянное время и без учёта регистра hex-цифр.
      *
      * @param rawPassword  сырой пароль
      * @param storedHash   сохранённый хеш (hex-строка)
@@ -43,16 +47,33 @@ public final class PasswordEncoder {
         if (storedHash == null || rawPassword == null) {
             return false;
         }
-        return hash(rawPassword).equalsIgnoreCase(storedHash);
+        byte[] hash = digest(rawPassword);
+        if (storedHash.length() != hash.length * 2) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < hash.length; i++) {
+            int high = Character.digit(storedHash.charAt(2 * i), 16);
+            int low = Character.digit(storedHash.charAt(2 * i + 1), 16);
+            // некорректная hex-цифра (-1) даёт ненулевую разницу
+            diff |= (high | low) >>> 31;
+            diff |= (hash[i] & 0xff) ^ ((high << 4) | low);
+        }
+        return diff == 0;
+    }
+
+    private static byte[] digest(String rawPassword) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        return digest.digest(rawPassword.getBytes(StandardCharsets.UTF_8));
     }
 
-    // Помощник: перевод массива байт в hex
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            logger.error("Не удалось получить алгоритм SHA-256 для хеширования пароля", e);
+            throw new IllegalStateException("SHA-256 algorithm not available", e);
         }
-        return sb.toString();
     }
 }
-
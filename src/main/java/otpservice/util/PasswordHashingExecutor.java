@@ -0,0 +1,162 @@
+package otpservice.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Отдельный ограниченный пул для хеширования и проверки паролей (/login, /register).
+ * <p>
+ * Хеширование вынесено с потоков обработки запросов: число потоков и длина очереди задаются
+ * отдельно ({@code password.executor.threads}, {@code password.executor.queueSize}), поэтому
+ * всплеск логинов занимает только этот пул и не отнимает процессор у остальных маршрутов.
+ * При заполненной очереди задача отклоняется сразу; задача, простоявшая в очереди дольше
+ * {@code password.executor.maxQueueMillis}, не выполняется — клиент, скорее всего, уже не ждёт.
+ * В обоих случаях вызывающий получает {@link ServiceOverloadedException}.
+ * </p>
+ */
+public class PasswordHashingExecutor implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingExecutor.class);
+
+    private final ThreadPoolExecutor pool;
+    private final int queueSize;
+    private final long maxQueueNanos;
+    private final int retryAfterSeconds;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAccumulator maxQueueNanosSeen = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param threads           число потоков хеширования
+     * @param queueSize         максимальная длина очереди
+     * @param maxQueueMillis    максимальное время ожидания задачи в очереди
+     * @param retryAfterSeconds значение Retry-After для отклонённых запросов
+     */
+    public PasswordHashingExecutor(int threads, int queueSize, long maxQueueMillis, int retryAfterSeconds) {
+        this.queueSize = queueSize;
+        this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueMillis);
+        this.retryAfterSeconds = retryAfterSeconds;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.pool.prestartAllCoreThreads();
+        logger.info("Password hashing executor: threads={}, queue={}, maxQueue={}ms",
+                threads, queueSize, maxQueueMillis);
+    }
+
+    /**
+     * Создаёт пул по параметрам {@code password.executor.*} из application.properties.
+     * {@code threads=0} — по числу процессоров.
+     */
+    public static PasswordHashingExecutor fromProperties(Properties config) {
+        int threads = Integer.parseInt(config.getProperty("password.executor.threads", "0"));
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        int queueSize = Integer.parseInt(config.getProperty("password.executor.queueSize", "64"));
+        long maxQueueMillis = Long.parseLong(config.getProperty("password.executor.maxQueueMillis", "500"));
+        int retryAfter = Integer.parseInt(config.getProperty("password.executor.retryAfterSeconds", "1"));
+        return new PasswordHashingExecutor(threads, queueSize, maxQueueMillis, retryAfter);
+    }
+
+    /**
+     * Хеширует пароль в пуле, см. {@link PasswordEncoder#hash(String)}.
+     * @throws ServiceOverloadedException если пул перегружен
+     */
+    public String hash(String rawPassword) {
+        return call(() -> PasswordEncoder.hash(rawPassword));
+    }
+
+    /**
+     * Проверяет пароль в пуле, см. {@link PasswordEncoder#matches(String, String)}.
+     * @throws ServiceOverloadedException если пул перегружен
+     */
+    public boolean matches(String rawPassword, String storedHash) {
+        return call(() -> PasswordEncoder.matches(rawPassword, storedHash));
+    }
+
+    /**
+     * Сводка для администратора: размер пула, очередь, отказы и время ожидания в очереди.
+     */
+    public Map<String, Object> stats() {
+        long started = completed.sum() + expired.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", pool.getMaximumPoolSize());
+        stats.put("active", pool.getActiveCount());
+        stats.put("queued", pool.getQueue().size());
+        stats.put("queueSize", queueSize);
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", completed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("expired", expired.sum());
+        stats.put("queueWaitAvgMs", started == 0 ? 0.0 : queueNanos.sum() / 1_000_000.0 / started);
+        stats.put("queueWaitMaxMs", maxQueueNanosSeen.get() / 1_000_000.0);
+        return stats;
+    }
+
+    /** Останавливает пул; задачи в очереди не выполняются */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private <T> T call(Supplier<T> work) {
+        long enqueuedAt = System.nanoTime();
+        FutureTask<T> task = new FutureTask<>(() -> {
+            long waited = System.nanoTime() - enqueuedAt;
+            queueNanos.add(waited);
+            maxQueueNanosSeen.accumulate(waited);
+            if (waited > maxQueueNanos) {
+                expired.increment();
+                throw new ServiceOverloadedException("Password hashing queue", retryAfterSeconds);
+            }
+            T result = work.get();
+            completed.increment();
+            return result;
+        });
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.warn("Password hashing rejected: active={}, queued={}", pool.getActiveCount(), pool.getQueue().size());
+            throw new ServiceOverloadedException("Password hashing queue", retryAfterSeconds);
+        }
+        submitted.increment();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package otpservice.util;
+
+import java.io.IOException;
+
+/**
+ * Тело запроса превышает допустимый для маршрута размер (HTTP 413).
+ */
+public class PayloadTooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long limit;
+
+    public PayloadTooLargeException(long limit) {
+        super("Request body exceeds " + limit + " bytes");
+        this.limit = limit;
+    }
+
+    /** @return допустимый размер тела в байтах */
+    public long getLimit() {
+        return limit;
+    }
+}
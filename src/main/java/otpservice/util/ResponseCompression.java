@@ -0,0 +1,259 @@
+package otpservice.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Сжатие тел HTTP-ответов (gzip / deflate) по заголовку Accept-Encoding.
+ * <p>
+ * Тела меньше порога {@code http.compression.minSize} не сжимаются.
+ * Экземпляры Deflater берутся из ограниченных пулов и переиспользуются:
+ * gzip формируется вручную (заголовок + raw deflate + CRC32/ISIZE),
+ * т.к. GZIPOutputStream не принимает внешний Deflater.
+ * </p>
+ */
+public final class ResponseCompression {
+
+    /** Поддерживаемые кодировки ответа */
+    public enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate"),
+        IDENTITY(null);
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        /** @return значение для заголовка Content-Encoding (null для IDENTITY) */
+        public String getToken() {
+            return token;
+        }
+    }
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final DeflaterPool RAW_POOL = new DeflaterPool(true);
+    private static final DeflaterPool ZLIB_POOL = new DeflaterPool(false);
+
+    private static volatile boolean enabled = true;
+    private static volatile int minSize = 1024;
+
+    private ResponseCompression() { /* запрет создания экземпляров */ }
+
+    /**
+     * Загружает настройки сжатия из application.properties.
+     */
+    public static void configure(Properties config) {
+        enabled = Boolean.parseBoolean(config.getProperty("http.compression.enabled", "true"));
+        minSize = Integer.parseInt(config.getProperty("http.compression.minSize", "1024"));
+    }
+
+    /**
+     * Выбирает кодировку по заголовку Accept-Encoding с учётом q-значений.
+     * При равных весах предпочитается gzip.
+     * @param acceptEncoding значение заголовка (может быть null)
+     * @return выбранная кодировка
+     */
+    public static Encoding negotiate(String acceptEncoding) {
+        if (!enabled || acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return Encoding.IDENTITY;
+        }
+        double gzipQ = 0;
+        double deflateQ = 0;
+        double wildcardQ = 0;
+        boolean gzipListed = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case "gzip":
+                case "x-gzip":
+                    gzipQ = q;
+                    gzipListed = true;
+                    break;
+                case "deflate":
+                    deflateQ = q;
+                    break;
+                case "*":
+                    wildcardQ = q;
+                    break;
+                default:
+            }
+        }
+        if (!gzipListed) {
+            gzipQ = wildcardQ;
+        }
+        if (gzipQ > 0 && gzipQ >= deflateQ) {
+            return Encoding.GZIP;
+        }
+        return deflateQ > 0 ? Encoding.DEFLATE : Encoding.IDENTITY;
+    }
+
+    /**
+     * @param length размер тела в байтах
+     * @return true, если тело достаточно велико для сжатия
+     */
+    public static boolean worthCompressing(int length) {
+        return length >= minSize;
+    }
+
+    /**
+     * Сжимает готовое тело ответа.
+     */
+    public static byte[] compress(byte[] body, Encoding encoding) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream os = wrap(buffer, encoding)) {
+            os.write(body);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Оборачивает поток ответа сжимающим потоком. Deflater возвращается в пул при close().
+     */
+    public static OutputStream wrap(OutputStream out, Encoding encoding) throws IOException {
+        switch (encoding) {
+            case GZIP:
+                return new GzipStream(out, RAW_POOL.borrow());
+            case DEFLATE:
+                return new PooledDeflaterStream(out, ZLIB_POOL, ZLIB_POOL.borrow());
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * Строгий ETag отдельного представления: "tag" → "tag-gzip".
+     */
+    public static String etagFor(String etag, Encoding encoding) {
+        if (etag == null || encoding == Encoding.IDENTITY || !etag.endsWith("\"")) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + encoding.getToken() + "\"";
+    }
+
+    /**
+     * Снимает суффикс кодировки с ETag, присланного клиентом.
+     */
+    public static String baseEtag(String etag) {
+        for (Encoding encoding : Encoding.values()) {
+            if (encoding.getToken() != null) {
+                String suffix = "-" + encoding.getToken() + "\"";
+                if (etag.endsWith(suffix)) {
+                    return etag.substring(0, etag.length() - suffix.length()) + "\"";
+                }
+            }
+        }
+        return etag;
+    }
+
+    /** Ограниченный пул Deflater одного формата */
+    private static final class DeflaterPool {
+        private final boolean nowrap;
+        private final ConcurrentLinkedQueue<Deflater> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        DeflaterPool(boolean nowrap) {
+            this.nowrap = nowrap;
+        }
+
+        Deflater borrow() {
+            Deflater deflater = idle.poll();
+            if (deflater == null) {
+                return new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+            }
+            idleCount.decrementAndGet();
+            return deflater;
+        }
+
+        void release(Deflater deflater) {
+            deflater.reset();
+            if (idleCount.incrementAndGet() <= MAX_POOLED) {
+                idle.offer(deflater);
+            } else {
+                idleCount.decrementAndGet();
+                deflater.end();
+            }
+        }
+    }
+
+    /** DeflaterOutputStream, возвращающий Deflater в пул после закрытия */
+    private static class PooledDeflaterStream extends DeflaterOutputStream {
+        private final DeflaterPool pool;
+        private boolean closed;
+
+        PooledDeflaterStream(OutputStream out, DeflaterPool pool, Deflater deflater) {
+            super(out, deflater, 8192);
+            this.pool = pool;
+        }
+
+        protected void writeTrailer() throws IOException {
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                finish();
+                writeTrailer();
+                out.close();
+            } finally {
+                pool.release(def);
+            }
+        }
+    }
+
+    /** gzip-поток поверх переиспользуемого raw Deflater */
+    private static final class GzipStream extends PooledDeflaterStream {
+        private final CRC32 crc = new CRC32();
+
+        GzipStream(OutputStream out, Deflater deflater) throws IOException {
+            super(out, RAW_POOL, deflater);
+            out.write(GZIP_HEADER);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        protected void writeTrailer() throws IOException {
+            writeIntLe(out, (int) crc.getValue());
+            writeIntLe(out, def.getTotalIn());
+        }
+
+        private static void writeIntLe(OutputStream os, int value) throws IOException {
+            os.write(value & 0xff);
+            os.write((value >>> 8) & 0xff);
+            os.write((value >>> 16) & 0xff);
+            os.write((value >>> 24) & 0xff);
+        }
+    }
+}
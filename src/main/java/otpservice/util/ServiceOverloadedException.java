@@ -0,0 +1,20 @@
+package otpservice.util;
+
+/**
+ * Ресурс сервиса перегружен, запрос отклонён без ожидания (HTTP 503 с заголовком Retry-After).
+ */
+public class ServiceOverloadedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfterSeconds;
+
+    public ServiceOverloadedException(String resource, int retryAfterSeconds) {
+        super(resource + " is saturated");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /** @return через сколько секунд клиенту стоит повторить запрос */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,76 @@
+package otpservice.util;
+
+import otpservice.model.User;
+
+import java.util.Map;
+
+/**
+ * Хранилище сессий режима opaque: токен → пользователь и момент истечения.
+ * Реализация выбирается параметром {@code token.store} (см. {@link TokenManager}).
+ */
+public interface SessionStore {
+
+    /**
+     * Сохраняет новую сессию, при необходимости вытесняя старые.
+     * @param expiresAtMillis момент истечения, мс от эпохи
+     */
+    void put(String token, User user, long expiresAtMillis);
+
+    /**
+     * Возвращает пользователя действующей сессии. Проверка выполняется без блокировок.
+     * @return пользователь или null, если токена нет или он просрочен
+     */
+    User get(String token, long nowMillis);
+
+    /**
+     * То же, что {@link #get(String, long)}, но со скользящим сроком: сессия, у которой
+     * осталось меньше половины {@code ttlMillis}, продлевается до {@code nowMillis + ttlMillis}.
+     */
+    User touch(String token, long nowMillis, long ttlMillis);
+
+    /**
+     * Поиск сессии по токену, записанному в строке начиная с {@code offset}
+     * (например, в заголовке Authorization после {@code "Bearer "}).
+     * Реализация по умолчанию выделяет подстроку; хранилище, разбирающее токен на месте,
+     * переопределяет метод.
+     * @param ttlMillis срок скользящего продления (см. {@link #touch}) или 0 — без продления
+     */
+    default User lookup(String source, int offset, long nowMillis, long ttlMillis) {
+        String token = offset == 0 ? source : source.substring(offset);
+        return ttlMillis > 0 ? touch(token, nowMillis, ttlMillis) : get(token, nowMillis);
+    }
+
+    /**
+     * Удаляет сессию досрочно.
+     * @return true, если сессия существовала
+     */
+    boolean remove(String token);
+
+    /**
+     * Удаляет все сессии пользователя.
+     * @return число удалённых сессий
+     */
+    int removeUser(long userId);
+
+    /**
+     * Удаляет просроченные сессии. Вызывается фоновым потоком очистки.
+     * @return число удалённых сессий
+     */
+    int purgeExpired(long nowMillis);
+
+    /**
+     * @return число сессий в хранилище
+     */
+    int size();
+
+    /**
+     * Сводка для администратора: размер, лимиты и счётчики вытеснений.
+     */
+    Map<String, Object> stats();
+
+    /**
+     * Освобождает ресурсы хранилища.
+     */
+    default void close() {
+    }
+}
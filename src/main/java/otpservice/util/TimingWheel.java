@@ -0,0 +1,140 @@
+package otpservice.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Иерархическое колесо таймеров с шагом в одну секунду для числовых идентификаторов.
+ * <p>
+ * Четыре уровня по 64 ячейки: 64 с, ~68 мин, ~48 ч и ~194 суток. Запись попадает на уровень,
+ * соответствующий оставшемуся времени, и при обороте верхнего уровня переносится ниже,
+ * пока не окажется в секундной ячейке своего срока. Более дальние сроки хранятся на верхнем
+ * уровне и переносятся повторно. Ячейка — пара массивов long (id и срок), объекты на запись
+ * не создаются. Добавление и продвижение синхронизированы.
+ * </p>
+ */
+public final class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final Bucket[][] buckets = new Bucket[LEVELS][SLOTS];
+    /** Записи, чей срок уже наступил к моменту добавления */
+    private final Bucket overdue = new Bucket();
+    private final Bucket cascade = new Bucket();
+
+    /** Последняя обработанная секунда */
+    private long current;
+    private int size;
+
+    /**
+     * @param nowSecond текущее время в секундах от эпохи
+     */
+    public TimingWheel(long nowSecond) {
+        this.current = nowSecond;
+        for (Bucket[] level : buckets) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Bucket();
+            }
+        }
+    }
+
+    /**
+     * Планирует срабатывание идентификатора.
+     * @param deadlineSecond секунда от эпохи; прошедший срок сработает при следующем продвижении
+     */
+    public synchronized void schedule(long id, long deadlineSecond) {
+        place(id, deadlineSecond);
+        size++;
+    }
+
+    /**
+     * Продвигает колесо до {@code nowSecond} включительно и передаёт наступившие идентификаторы.
+     * @param due получатель идентификаторов; вызывается под блокировкой колеса и не должен ждать
+     * @return число сработавших записей
+     */
+    public synchronized int advance(long nowSecond, LongConsumer due) {
+        int fired = overdue.drainTo(due);
+        while (current < nowSecond) {
+            long tick = ++current;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                int shift = SLOT_BITS * level;
+                if ((tick & ((1L << shift) - 1)) == 0) {
+                    Bucket bucket = buckets[level][(int) (tick >>> shift) & SLOT_MASK];
+                    cascade.takeFrom(bucket);
+                    for (int i = 0; i < cascade.size; i++) {
+                        place(cascade.ids[i], cascade.deadlines[i]);
+                    }
+                    cascade.size = 0;
+                }
+            }
+            fired += buckets[0][(int) tick & SLOT_MASK].drainTo(due);
+            fired += overdue.drainTo(due);
+        }
+        size -= fired;
+        return fired;
+    }
+
+    /**
+     * @return число запланированных записей
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void place(long id, long deadline) {
+        long delay = deadline - current;
+        if (delay <= 0) {
+            overdue.add(id, deadline);
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        long slotTime = level == LEVELS - 1 && delay >= 1L << (SLOT_BITS * LEVELS)
+                ? current + (1L << (SLOT_BITS * LEVELS)) - 1
+                : deadline;
+        buckets[level][(int) (slotTime >>> (SLOT_BITS * level)) & SLOT_MASK].add(id, deadline);
+    }
+
+    /** Ячейка колеса: растущие массивы id и сроков */
+    private static final class Bucket {
+        long[] ids = new long[4];
+        long[] deadlines = new long[4];
+        int size;
+
+        void add(long id, long deadline) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                deadlines = Arrays.copyOf(deadlines, capacity);
+            }
+            ids[size] = id;
+            deadlines[size] = deadline;
+            size++;
+        }
+
+        int drainTo(LongConsumer due) {
+            int count = size;
+            for (int i = 0; i < count; i++) {
+                due.accept(ids[i]);
+            }
+            size = 0;
+            return count;
+        }
+
+        /** Забирает содержимое другой ячейки (она остаётся пустой) */
+        void takeFrom(Bucket other) {
+            long[] ids = this.ids;
+            long[] deadlines = this.deadlines;
+            this.ids = other.ids;
+            this.deadlines = other.deadlines;
+            this.size = other.size;
+            other.ids = ids;
+            other.deadlines = deadlines;
+            other.size = 0;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package otpservice.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограничитель частоты запросов с отдельным «ведром токенов» на каждый ключ
+ * (адрес клиента, id пользователя).
+ * <p>
+ * Ведро хранится одним числом — моментом, когда оно снова станет полным (алгоритм GCRA,
+ * эквивалентный token bucket). Списание токена — один CAS без блокировок и аллокаций;
+ * ключи распределены по сегментам {@link ConcurrentHashMap}, поэтому потоки с разными
+ * ключами не конкурируют. Полные (простаивающие) вёдра удаляются периодической очисткой:
+ * её выполняют вызывающие потоки порциями по {@value #SWEEP_BATCH} записей за вызов.
+ * </p>
+ * <p>
+ * Число вёдер строго ограничено {@code maxKeys}: новые ключи сверх предела делят одно общее
+ * ведро переполнения, пока очистка не освободит место. Так перебор адресов клиента не
+ * раздувает таблицу, а атакующий делит общее ведро с остальными новыми клиентами, но не
+ * с уже известными.
+ * </p>
+ */
+public class TokenBucketRateLimiter<K> {
+    /** Записей, просматриваемых очисткой за один вызов */
+    private static final int SWEEP_BATCH = 1024;
+
+    private final String name;
+    private final int capacity;
+    private final long periodSeconds;
+    /** Время пополнения одного токена */
+    private final long emissionNanos;
+    /** Время пополнения полного ведра */
+    private final long burstNanos;
+    private final int maxKeys;
+    private final long sweepIntervalNanos;
+
+    /** ключ → момент (System.nanoTime), когда ведро станет полным */
+    private final ConcurrentHashMap<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+    /** Число вёдер в таблице; резервируется до вставки, поэтому не превышает maxKeys */
+    private final AtomicInteger keyCount = new AtomicInteger();
+    /** Общее ведро для новых ключей сверх maxKeys */
+    private final AtomicLong overflow;
+    private final AtomicLong nextSweep;
+    /** Очистку в каждый момент выполняет один поток */
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    /** Позиция незавершённой очистки; читается и пишется только под {@link #sweeping} */
+    private Iterator<Map.Entry<K, AtomicLong>> sweepCursor;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    /**
+     * @param name          имя для статистики
+     * @param capacity      размер ведра (допустимый всплеск)
+     * @param periodSeconds за сколько секунд ведро пополняется полностью
+     * @param maxKeys       предельное число вёдер; новые ключи сверх него делят общее ведро
+     */
+    public TokenBucketRateLimiter(String name, int capacity, long periodSeconds, int maxKeys) {
+        if (capacity <= 0 || periodSeconds <= 0) {
+            throw new IllegalArgumentException("Rate limit for " + name + " must be positive");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.periodSeconds = periodSeconds;
+        this.emissionNanos = TimeUnit.SECONDS.toNanos(periodSeconds) / capacity;
+        this.burstNanos = emissionNanos * capacity;
+        this.maxKeys = maxKeys;
+        this.sweepIntervalNanos = Math.max(TimeUnit.SECONDS.toNanos(periodSeconds), TimeUnit.SECONDS.toNanos(10));
+        long now = System.nanoTime();
+        this.overflow = new AtomicLong(now);
+        this.nextSweep = new AtomicLong(now + sweepIntervalNanos);
+    }
+
+    /**
+     * Разбирает лимит вида {@code <запросов>/<секунд>}, например {@code 10/60}.
+     * @return ограничитель или null, если лимит не задан (пустая строка или 0)
+     * @throws IllegalArgumentException если формат неверен
+     */
+    public static <K> TokenBucketRateLimiter<K> parse(String name, String spec, int maxKeys) {
+        if (spec == null || spec.isBlank() || spec.trim().equals("0")) {
+            return null;
+        }
+        String[] parts = spec.trim().split("/");
+        try {
+            if (parts.length == 2) {
+                return new TokenBucketRateLimiter<>(name, Integer.parseInt(parts[0].trim()),
+                        Long.parseLong(parts[1].trim()), maxKeys);
+            }
+        } catch (NumberFormatException e) {
+            // сообщение ниже
+        }
+        throw new IllegalArgumentException("Invalid rate limit for " + name + ": " + spec
+                + " (expected <requests>/<seconds>)");
+    }
+
+    /**
+     * Пытается списать токен из ведра ключа.
+     * @return 0, если запрос разрешён; иначе через сколько наносекунд появится токен
+     */
+    public long tryAcquire(K key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    /**
+     * То же, что {@link #tryAcquire(Object)}, с явным текущим временем.
+     * @param now текущее значение {@link System#nanoTime()}
+     */
+    long tryAcquire(K key, long now) {
+        maybeSweep(now);
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = createBucket(key, now);
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt - now, 0) + now + emissionNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong createBucket(K key, long now) {
+        if (keyCount.incrementAndGet() > maxKeys) {
+            keyCount.decrementAndGet();
+            overflowed.increment();
+            return overflow;
+        }
+        AtomicLong fresh = new AtomicLong(now);
+        AtomicLong existing = buckets.putIfAbsent(key, fresh);
+        if (existing != null) {
+            keyCount.decrementAndGet();
+            return existing;
+        }
+        return fresh;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getPeriodSeconds() {
+        return periodSeconds;
+    }
+
+    public int getKeyCount() {
+        return buckets.size();
+    }
+
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return сколько раз новый ключ получил общее ведро из-за предела {@code maxKeys}
+     */
+    public long getOverflowCount() {
+        return overflowed.sum();
+    }
+
+    /**
+     * Удаляет полные вёдра: по ним нет истории, ключ без ведра получает полное ведро.
+     * Запрос, успевший списать токен из удаляемого ведра, теряет это списание — не больше
+     * одного лишнего токена на ключ за период очистки.
+     * <p>
+     * Раз в интервал очистки таблица обходится порциями по {@value #SWEEP_BATCH} записей:
+     * каждый вызов, заставший незавершённый обход, продолжает его с сохранённой позиции.
+     * Пока обход идёт, {@link #nextSweep} не сдвигается; по завершении назначается следующий.
+     * </p>
+     */
+    private void maybeSweep(long now) {
+        if (now - nextSweep.get() < 0 || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (sweepCursor == null) {
+                sweepCursor = buckets.entrySet().iterator();
+            }
+            for (int i = 0; i < SWEEP_BATCH && sweepCursor.hasNext(); i++) {
+                Map.Entry<K, AtomicLong> entry = sweepCursor.next();
+                if (entry.getValue().get() - now <= 0 && buckets.remove(entry.getKey(), entry.getValue())) {
+                    keyCount.decrementAndGet();
+                }
+            }
+            if (!sweepCursor.hasNext()) {
+                sweepCursor = null;
+                nextSweep.set(now + sweepIntervalNanos);
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
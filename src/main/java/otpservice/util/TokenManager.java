@@ -1,91 +1,344 @@
 package otpservice.util;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
+import otpservice.model.TokenPair;
 import otpservice.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Утиль для генерации, хранения и валидации токенов авторизации.
+ * <p>
+ * Режим задаётся параметром {@code token.mode}:
+ * <ul>
+ *   <li>{@code opaque} — случайный токен, сессия хранится в {@link SessionStore}:
+ *       в куче ({@link ExpiringTokenStore}, {@code token.store=heap}) или вне кучи
+ *       ({@link OffHeapSessionStore}, {@code token.store=offheap}); фоновый поток раз в
+ *       {@code token.purgeIntervalSeconds} удаляет просроченные сессии (по умолчанию)</li>
+ *   <li>{@code jwt} — подписанный токен ({@link JwtTokenCodec}), проверяется без хранилища
+ *       на любой реплике; отозванные токены отсекаются {@link TokenRevocationList},
+ *       который сохраняется в файл {@code token.revocation.file}</li>
+ * </ul>
+ * Вместе с токеном доступа выдаётся одноразовый refresh-токен ({@link #issueTokens(User)}):
+ * по нему {@link #refresh(String)} выпускает новую пару без обращения к БД и хешированию пароля.
+ * В режиме opaque refresh-токены хранятся в отдельном {@link ExpiringTokenStore}, в режиме jwt —
+ * подписаны с {@code typ=refresh}, а повторное использование отсекается списком отзыва.
+ * При {@code token.slidingExpiry=true} (только opaque) активная сессия продлевается при обращениях.
+ * Параметры задаются в application.properties через {@link #configure(Properties)}.
+ * </p>
  */
 public final class TokenManager {
     private static final Logger logger = LoggerFactory.getLogger(TokenManager.class);
 
-    /** Хранилище: токен → информация о пользователе и времени истечения */
-    private static final Map<String, TokenInfo> tokens = new ConcurrentHashMap<>();
+    /** Режимы выдачи токенов */
+    public enum Mode {
+        OPAQUE,
+        JWT
+    }
+
+    private static volatile Mode mode = Mode.OPAQUE;
+
+    /** Ключи подписи и верификаторы режима JWT */
+    private static volatile JwtTokenCodec jwtCodec;
+
+    /** Отозванные JWT (jti и пользователи) */
+    private static volatile TokenRevocationList revocations = new TokenRevocationList(null, 1024);
+
+    /** Предъявлено отозванных JWT (в лог — только debug) */
+    private static final LongAdder revokedPresented = new LongAdder();
 
     /** Время жизни токена в минутах */
-    private static final long TTL_MINUTES = 30;
+    private static volatile long ttlMinutes = 30;
+
+    /** Время жизни refresh-токена в минутах */
+    private static volatile long refreshTtlMinutes = 1440;
+
+    /** Продлевать ли сессию opaque при каждом обращении */
+    private static volatile boolean slidingExpiry;
+
+    /** Хранилище: токен → пользователь и время истечения */
+    private static volatile SessionStore store = new ExpiringTokenStore(5_000, 10, 1_000_000);
+
+    /** Одноразовые refresh-токены режима opaque */
+    private static volatile SessionStore refreshStore = new ExpiringTokenStore(5_000, 10, 1_000_000);
+
+    private static ScheduledExecutorService purger;
 
     private TokenManager() { /* запрет создания экземпляров */ }
 
     /**
-     * Генерирует новый токен для пользователя и сохраняет его в памяти.
+     * Загружает параметры хранилища токенов и запускает фоновую очистку.
+     * @param config параметры из application.properties
+     */
+    public static synchronized void configure(Properties config) {
+        String modeValue = config.getProperty("token.mode", "opaque").trim();
+        try {
+            mode = Mode.valueOf(modeValue.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported token.mode: " + modeValue, e);
+        }
+        jwtCodec = mode == Mode.JWT ? JwtTokenCodec.fromProperties(config) : null;
+        ttlMinutes = Long.parseLong(config.getProperty("token.ttlMinutes", "30"));
+        refreshTtlMinutes = Long.parseLong(config.getProperty("token.refreshTtlMinutes", "1440"));
+        slidingExpiry = Boolean.parseBoolean(config.getProperty("token.slidingExpiry", "false").trim());
+        if (slidingExpiry && mode == Mode.JWT) {
+            logger.warn("token.slidingExpiry is ignored in jwt mode: use POST /token/refresh");
+        }
+        long purgeSeconds = Long.parseLong(config.getProperty("token.purgeIntervalSeconds", "5"));
+        int maxPerUser = Integer.parseInt(config.getProperty("token.maxSessionsPerUser", "10"));
+        int maxTotal = Integer.parseInt(config.getProperty("token.maxSessions", "1000000"));
+        String storeType = config.getProperty("token.store", "heap").trim().toLowerCase(Locale.ROOT);
+
+        shutdown();
+        switch (storeType) {
+            case "heap":
+                store = new ExpiringTokenStore(TimeUnit.SECONDS.toMillis(purgeSeconds), maxPerUser, maxTotal);
+                break;
+            case "offheap":
+                store = new OffHeapSessionStore(Long.parseLong(config.getProperty("token.offheap.capacity", "1048576")));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported token.store: " + storeType);
+        }
+        refreshStore = new ExpiringTokenStore(TimeUnit.SECONDS.toMillis(purgeSeconds), maxPerUser, maxTotal);
+        if (mode == Mode.JWT) {
+            String file = config.getProperty("token.revocation.file", "revoked-tokens.log").trim();
+            int expected = Integer.parseInt(config.getProperty("token.revocation.expectedEntries", "100000"));
+            revocations = new TokenRevocationList(file.isEmpty() ? null : Path.of(file), expected);
+        }
+        purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "token-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        purger.scheduleWithFixedDelay(TokenManager::purgeExpired, purgeSeconds, purgeSeconds, TimeUnit.SECONDS);
+        logger.info("Token manager configured: mode={}, store={}, ttl={}min, refreshTtl={}min, sliding={}, "
+                        + "purge every {}s, maxPerUser={}, maxTotal={}",
+                mode, storeType, ttlMinutes, refreshTtlMinutes, slidingExpiry, purgeSeconds, maxPerUser, maxTotal);
+    }
+
+    /**
+     * Останавливает фоновую очистку, освобождает хранилище сессий и закрывает файл отзывов.
+     */
+    public static synchronized void shutdown() {
+        if (purger != null) {
+            purger.shutdownNow();
+            purger = null;
+        }
+        store.close();
+        refreshStore.close();
+        revocations.close();
+    }
+
+    /**
+     * Генерирует новый токен для пользователя: в режиме opaque сохраняет его в памяти,
+     * в режиме jwt подписывает активным ключом.
      * @param user объект пользователя
      * @return строковое представление токена
      */
     public static String generateToken(User user) {
+        long expiresAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttlMinutes);
+        JwtTokenCodec codec = jwtCodec;
+        if (codec != null) {
+            String token = codec.issue(user, UUID.randomUUID().toString(), expiresAt, JwtTokenCodec.TYPE_ACCESS);
+            logger.info("Issued JWT for user {} (expires at {})", user.getUsername(), Instant.ofEpochMilli(expiresAt));
+            return token;
+        }
         String token = UUID.randomUUID().toString();
-        Instant expiry = Instant.now().plus(TTL_MINUTES, ChronoUnit.MINUTES);
-        tokens.put(token, new TokenInfo(user, expiry));
-        logger.info("Generated token {} for user {} (expires at {})", token, user.getUsername(), expiry);
+        store.put(token, user, expiresAt);
+        logger.info("Generated token for user {} (expires at {})", user.getUsername(), Instant.ofEpochMilli(expiresAt));
         return token;
     }
 
+    /**
+     * Выдаёт пару токенов: токен доступа и одноразовый refresh-токен.
+     * @param user объект пользователя
+     */
+    public static TokenPair issueTokens(User user) {
+        String token = generateToken(user);
+        long expiresAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(refreshTtlMinutes);
+        JwtTokenCodec codec = jwtCodec;
+        String refreshToken;
+        if (codec != null) {
+            refreshToken = codec.issue(user, UUID.randomUUID().toString(), expiresAt, JwtTokenCodec.TYPE_REFRESH);
+        } else {
+            refreshToken = UUID.randomUUID().toString();
+            refreshStore.put(refreshToken, user, expiresAt);
+        }
+        return new TokenPair(token, refreshToken, TimeUnit.MINUTES.toSeconds(ttlMinutes));
+    }
+
+    /**
+     * Обменивает refresh-токен на новую пару токенов. Refresh-токен одноразовый:
+     * после обмена он недействителен, повторное предъявление отклоняется.
+     * @param refreshToken refresh-токен из предыдущей пары
+     * @return новая пара токенов или null, если refresh-токен недействителен, просрочен или уже использован
+     */
+    public static TokenPair refresh(String refreshToken) {
+        User user;
+        JwtTokenCodec codec = jwtCodec;
+        if (codec != null) {
+            DecodedJWT jwt = codec.verify(refreshToken);
+            if (jwt == null || !JwtTokenCodec.isRefresh(jwt) || jwt.getId() == null) {
+                return null;
+            }
+            user = codec.toUser(jwt);
+            if (user == null || revocations.isRevoked(jwt.getId(), user.getId(), jwt.getIssuedAt().getTime())) {
+                logger.warn("Revoked refresh token presented");
+                return null;
+            }
+            // отзыв jti атомарен: из двух одновременных обменов успешен только один
+            if (!revocations.revokeToken(jwt.getId(), jwt.getExpiresAt().getTime())) {
+                logger.warn("Refresh token {} reused by user {}", jwt.getId(), user.getId());
+                return null;
+            }
+        } else {
+            user = refreshStore.get(refreshToken, System.currentTimeMillis());
+            if (user == null || !refreshStore.remove(refreshToken)) {
+                logger.warn("Refresh failed: token not found, expired or already used");
+                return null;
+            }
+        }
+        logger.info("Tokens refreshed for user {}", user.getId());
+        return issueTokens(user);
+    }
+
     /**
      * Проверяет, что токен присутствует и не просрочен.
      * @param token строка токена
      * @return true, если токен валиден
      */
     public static boolean validate(String token) {
-        TokenInfo info = tokens.get(token);
-        if (info == null) {
-            logger.warn("Token validation failed: token not found");
-            return false;
-        }
-        if (Instant.now().isAfter(info.expiry)) {
-            tokens.remove(token);
-            logger.warn("Token {} expired at {}, removed from store", token, info.expiry);
-            return false;
-        }
-        return true;
+        return getUser(token) != null;
     }
 
     /**
-     * Возвращает пользователя, ассоциированного с токеном.
+     * Возвращает пользователя, ассоциированного с токеном (без блокировок).
+     * В режиме opaque просроченные токены удаляются фоновой очисткой; в режиме jwt
+     * пользователь восстанавливается из утверждений токена (id, логин, роль).
+     * Refresh-токены здесь не принимаются. При {@code token.slidingExpiry=true}
+     * сессия opaque продлевается на полный срок, если прошло больше половины.
      * @param token валидный токен
      * @return объект User или null, если токен некорректен/просрочен
      */
     public static User getUser(String token) {
-        if (!validate(token)) {
-            return null;
+        return getUser(token, 0);
+    }
+
+    /**
+     * То же, что {@link #getUser(String)}, для токена, записанного в строке начиная с {@code offset}
+     * (заголовок Authorization после {@code "Bearer "}). В режиме opaque выполняется ровно один
+     * поиск в хранилище. Без подстроки работает только хранилище вне кучи, разбирающее токен
+     * на месте; хранилище в куче ищет по строке-ключу, а в режиме jwt токен декодируется
+     * из подстроки.
+     * @param source строка, содержащая токен
+     * @param offset начало токена в строке
+     * @return объект User или null, если токен некорректен/просрочен
+     */
+    public static User getUser(String source, int offset) {
+        JwtTokenCodec codec = jwtCodec;
+        if (codec != null) {
+            DecodedJWT jwt = codec.verify(offset == 0 ? source : source.substring(offset));
+            User user = jwt == null || JwtTokenCodec.isRefresh(jwt) ? null : codec.toUser(jwt);
+            if (user != null && revocations.isRevoked(jwt.getId(), user.getId(), jwt.getIssuedAt().getTime())) {
+                revokedPresented.increment();
+                logger.debug("Revoked JWT presented by user {}", user.getId());
+                return null;
+            }
+            return user;
+        }
+        long ttlMillis = slidingExpiry ? TimeUnit.MINUTES.toMillis(ttlMinutes) : 0;
+        User user = store.lookup(source, offset, System.currentTimeMillis(), ttlMillis);
+        if (user == null) {
+            logger.debug("Token validation failed: token not found or expired");
         }
-        return tokens.get(token).user;
+        return user;
     }
 
     /**
-     * Отозвать (удалить) токен досрочно.
+     * Отозвать токен досрочно: в режиме opaque сессия удаляется из хранилища,
+     * в режиме jwt jti токена заносится в список отзыва до истечения токена.
      * @param token строка токена
      */
     public static void revoke(String token) {
-        if (tokens.remove(token) != null) {
-            logger.info("Token {} revoked", token);
+        JwtTokenCodec codec = jwtCodec;
+        if (codec != null) {
+            DecodedJWT jwt = codec.verify(token);
+            if (jwt != null && jwt.getId() != null) {
+                revocations.revokeToken(jwt.getId(), jwt.getExpiresAt().getTime());
+                logger.info("JWT {} revoked", jwt.getId());
+            }
+            return;
+        }
+        // сам токен в журнал не пишется — только его владелец
+        User owner = store.get(token, System.currentTimeMillis());
+        if (store.remove(token)) {
+            logger.info("Token of user {} revoked", owner != null ? owner.getId() : "(expired)");
+        }
+    }
+
+    /**
+     * Отзывает все выданные пользователю токены (например, при удалении пользователя).
+     * @param userId id пользователя
+     */
+    public static void revokeUser(long userId) {
+        int removed = store.removeUser(userId) + refreshStore.removeUser(userId);
+        if (jwtCodec != null) {
+            long now = System.currentTimeMillis();
+            // токены, выпущенные до этого момента, истекут не позже чем через TTL (refresh — через свой TTL)
+            long maxTtl = TimeUnit.MINUTES.toMillis(Math.max(ttlMinutes, refreshTtlMinutes));
+            revocations.revokeUser(userId, now, now + maxTtl + 60_000);
         }
+        logger.info("All tokens of user {} revoked ({} sessions removed)", userId, removed);
     }
 
-    /** Внутренний класс для хранения информации о токене */
-    private static class TokenInfo {
-        final User user;
-        final Instant expiry;
+    /**
+     * Сводка хранилища токенов: размер, лимиты, вытеснения.
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", mode.name().toLowerCase(Locale.ROOT));
+        stats.putAll(store.stats());
+        stats.put("refreshSessions", refreshStore.size());
+        stats.putAll(revocations.stats());
+        JwtTokenCodec codec = jwtCodec;
+        if (codec != null) {
+            stats.putAll(codec.stats());
+            stats.put("jwtRevokedPresented", revokedPresented.sum());
+        }
+        return stats;
+    }
+
+    /** Текущее хранилище сессий (для тестов и бенчмарков пакета) */
+    static SessionStore sessionStore() {
+        return store;
+    }
 
-        TokenInfo(User user, Instant expiry) {
-            this.user = user;
-            this.expiry = expiry;
+    private static void purgeExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            int removed = store.purgeExpired(now) + refreshStore.purgeExpired(now);
+            if (removed > 0) {
+                logger.debug("Purged {} expired sessions, {} remain", removed, store.size());
+            }
+            int expiredRevocations = revocations.purge(now);
+            if (expiredRevocations > 0) {
+                logger.debug("Purged {} expired revocation entries", expiredRevocations);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Token purge failed: {}", e.getMessage(), e);
         }
     }
 }
@@ -0,0 +1,248 @@
+package otpservice.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Список отозванных токенов для режима JWT.
+ * <p>
+ * Точные множества: отозванные идентификаторы токенов (jti) и «водяные знаки» пользователей —
+ * все токены пользователя, выпущенные раньше отметки, недействительны. Каждая запись хранится,
+ * пока не истекут токены, на которые она влияет, и затем удаляется {@link #purge(long)}.
+ * Перед точными множествами стоит фильтр Блума: для неотозванного токена проверка
+ * {@link #isRevoked(String, long, long)} не обращается к хеш-таблицам и не аллоцирует память.
+ * </p>
+ * <p>
+ * Записи дописываются в файл построчно и читаются при старте, поэтому отзыв переживает
+ * перезапуск. После удаления истёкших записей файл переписывается целиком.
+ * </p>
+ */
+public class TokenRevocationList {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final Path file;
+    private final int expectedEntries;
+
+    /** jti → момент истечения токена, мс */
+    private final ConcurrentHashMap<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    /** id пользователя → отметка отзыва */
+    private final ConcurrentHashMap<Long, UserRevocation> revokedUsers = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter filter;
+    private BufferedWriter writer;
+
+    /**
+     * @param file            файл для сохранения записей или null (только в памяти)
+     * @param expectedEntries ожидаемое число одновременно действующих записей
+     */
+    public TokenRevocationList(Path file, int expectedEntries) {
+        this.file = file;
+        this.expectedEntries = expectedEntries;
+        this.filter = new BloomFilter(expectedEntries, FALSE_POSITIVE_RATE);
+        if (file != null) {
+            load(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Проверяет, отозван ли токен.
+     * @param tokenId  jti токена (может быть null)
+     * @param userId   id пользователя из токена
+     * @param issuedAt момент выпуска токена, мс
+     */
+    public boolean isRevoked(String tokenId, long userId, long issuedAt) {
+        BloomFilter current = filter;
+        if (tokenId != null && current.mightContain(tokenId) && revokedTokens.containsKey(tokenId)) {
+            return true;
+        }
+        if (current.mightContain(userId)) {
+            UserRevocation revocation = revokedUsers.get(userId);
+            return revocation != null && issuedAt < revocation.revokedBefore;
+        }
+        return false;
+    }
+
+    /**
+     * Отзывает один токен.
+     * @param tokenId   jti токена
+     * @param expiresAt момент истечения токена, мс — до него запись хранится
+     * @return false, если токен уже был отозван (используется для одноразовых refresh-токенов)
+     */
+    public synchronized boolean revokeToken(String tokenId, long expiresAt) {
+        if (revokedTokens.putIfAbsent(tokenId, expiresAt) != null) {
+            return false;
+        }
+        filter.add(tokenId);
+        append("T " + tokenId + " " + expiresAt);
+        return true;
+    }
+
+    /**
+     * Отзывает все токены пользователя, выпущенные до {@code revokedBefore}.
+     * @param expiresAt момент, когда истекут все такие токены
+     */
+    public synchronized void revokeUser(long userId, long revokedBefore, long expiresAt) {
+        revokedUsers.merge(userId, new UserRevocation(revokedBefore, expiresAt),
+                (old, fresh) -> new UserRevocation(Math.max(old.revokedBefore, fresh.revokedBefore),
+                        Math.max(old.expiresAt, fresh.expiresAt)));
+        filter.add(userId);
+        append("U " + userId + " " + revokedBefore + " " + expiresAt);
+    }
+
+    /**
+     * Удаляет записи, чьи токены уже истекли, перестраивает фильтр Блума и файл.
+     * @return число удалённых записей
+     */
+    public int purge(long now) {
+        int before = revokedTokens.size() + revokedUsers.size();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        revokedUsers.values().removeIf(revocation -> revocation.expiresAt <= now);
+        int removed = before - revokedTokens.size() - revokedUsers.size();
+        if (removed > 0) {
+            synchronized (this) {
+                filter = rebuildFilter();
+                rewriteFile();
+            }
+        }
+        return removed;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("revokedTokens", revokedTokens.size());
+        stats.put("revokedUsers", revokedUsers.size());
+        return stats;
+    }
+
+    /** Закрывает файл записей */
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close revocation file {}: {}", file, e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    private BloomFilter rebuildFilter() {
+        BloomFilter fresh = new BloomFilter(Math.max(expectedEntries,
+                (revokedTokens.size() + revokedUsers.size()) * 2), FALSE_POSITIVE_RATE);
+        revokedTokens.keySet().forEach(fresh::add);
+        revokedUsers.keySet().forEach(fresh::add);
+        return fresh;
+    }
+
+    private synchronized void append(String line) {
+        if (file == null) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                Path parent = file.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            // отзыв уже действует в памяти; в файл попадёт при следующей перезаписи
+            logger.error("Failed to persist revocation to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void rewriteFile() {
+        if (file == null) {
+            return;
+        }
+        close();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> e : revokedTokens.entrySet()) {
+                out.write("T " + e.getKey() + " " + e.getValue());
+                out.newLine();
+            }
+            for (Map.Entry<Long, UserRevocation> e : revokedUsers.entrySet()) {
+                out.write("U " + e.getKey() + " " + e.getValue().revokedBefore + " " + e.getValue().expiresAt);
+                out.newLine();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to compact revocation file {}: {}", file, e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Failed to replace revocation file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void load(long now) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read revocation file " + file, e);
+        }
+        for (String line : lines) {
+            String[] parts = line.trim().split(" ");
+            try {
+                if (parts.length == 3 && parts[0].equals("T")) {
+                    long expiresAt = Long.parseLong(parts[2]);
+                    if (expiresAt > now) {
+                        revokedTokens.merge(parts[1], expiresAt, Math::max);
+                    }
+                } else if (parts.length == 4 && parts[0].equals("U")) {
+                    long expiresAt = Long.parseLong(parts[3]);
+                    if (expiresAt > now) {
+                        revokedUsers.merge(Long.parseLong(parts[1]),
+                                new UserRevocation(Long.parseLong(parts[2]), expiresAt),
+                                (old, fresh) -> new UserRevocation(Math.max(old.revokedBefore, fresh.revokedBefore),
+                                        Math.max(old.expiresAt, fresh.expiresAt)));
+                    }
+                } else if (!line.isBlank()) {
+                    logger.warn("Skipping malformed revocation entry: {}", line);
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Skipping malformed revocation entry: {}", line);
+            }
+        }
+        filter = rebuildFilter();
+        logger.info("Loaded {} revoked tokens and {} revoked users from {}",
+                revokedTokens.size(), revokedUsers.size(), file);
+    }
+
+    /** Отметка отзыва токенов пользователя */
+    private static final class UserRevocation {
+        final long revokedBefore;
+        final long expiresAt;
+
+        UserRevocation(long revokedBefore, long expiresAt) {
+            this.revokedBefore = revokedBefore;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package otpservice.api;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteTableTest {
+
+    private final List<String> calls = new ArrayList<>();
+
+    private RouteTable table() {
+        RouteTable routes = new RouteTable();
+        routes.add(HttpMethod.GET, "/admin/users", exchange -> calls.add("list"), List.of());
+        routes.add(HttpMethod.GET, "/admin/users/me", exchange -> calls.add("me"), List.of());
+        routes.add(HttpMethod.DELETE, "/admin/users/{id:long}",
+                exchange -> calls.add("delete " + PathParams.of(exchange).getLong("id")), List.of());
+        routes.add(HttpMethod.GET, "/files/{name}",
+                exchange -> calls.add("file " + PathParams.of(exchange).get("name")), List.of());
+        routes.add(HttpMethod.PATCH, "/files/{name}", exchange -> calls.add("patch"), List.of());
+        return routes;
+    }
+
+    private static StubHttpExchange send(RouteTable routes, String method, String path) throws IOException {
+        StubHttpExchange exchange = new StubHttpExchange(method, path);
+        routes.handle(exchange);
+        return exchange;
+    }
+
+    @Test
+    void staticAndTypedRoutes() throws IOException {
+        RouteTable routes = table();
+        send(routes, "GET", "/admin/users");
+        send(routes, "GET", "/admin/users/");
+        send(routes, "GET", "/admin/users/me");
+        send(routes, "DELETE", "/admin/users/42");
+        send(routes, "get", "/files/report.csv");
+        assertEquals(List.of("list", "list", "me", "delete 42", "file report.csv"), calls);
+    }
+
+    @Test
+    void staticRouteHasNoPathParams() throws IOException {
+        StubHttpExchange exchange = send(table(), "GET", "/admin/users");
+        assertNull(exchange.getAttribute(PathParams.ATTRIBUTE));
+    }
+
+    @Test
+    void unknownPathOrWrongParamTypeIsNotFound() throws IOException {
+        RouteTable routes = table();
+        StubHttpExchange exchange = send(routes, "GET", "/admin/unknown");
+        assertEquals(404, exchange.getResponseCode());
+        assertEquals("{\"error\":\"Not Found\"}", exchange.responseBody());
+        assertEquals(404, send(routes, "GET", "/admin").getResponseCode());
+        // {id:long} не принимает нечисловой сегмент: маршрута нет
+        assertEquals(404, send(routes, "DELETE", "/admin/users/abc").getResponseCode());
+        assertEquals(404, send(routes, "DELETE", "/admin/users/42/extra").getResponseCode());
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    void wrongMethodIsMethodNotAllowedWithAllow() throws IOException {
+        RouteTable routes = table();
+        StubHttpExchange exchange = send(routes, "POST", "/files/a");
+        assertEquals(405, exchange.getResponseCode());
+        assertEquals("GET, PATCH", exchange.getResponseHeaders().getFirst("Allow"));
+        // литерал имеет приоритет над параметром: "me" — не id, а ресурс только с GET
+        exchange = send(routes, "DELETE", "/admin/users/me");
+        assertEquals(405, exchange.getResponseCode());
+        assertEquals("GET", exchange.getResponseHeaders().getFirst("Allow"));
+        assertEquals(405, send(routes, "TRACE", "/admin/users").getResponseCode());
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    void filtersRunInOrderBeforeHandler() throws IOException {
+        RouteTable routes = new RouteTable();
+        routes.add(HttpMethod.GET, "/ping", exchange -> calls.add("handler"),
+                List.of(recording("first"), recording("second")));
+        send(routes, "GET", "/ping");
+        assertEquals(List.of("first", "second", "handler"), calls);
+    }
+
+    @Test
+    void duplicateOrConflictingRoutesAreRejected() {
+        RouteTable routes = table();
+        assertThrows(IllegalStateException.class,
+                () -> routes.add(HttpMethod.GET, "/admin/users", exchange -> { }, List.of()));
+        assertThrows(IllegalStateException.class,
+                () -> routes.add(HttpMethod.GET, "/admin/users/{userId:long}", exchange -> { }, List.of()));
+        assertThrows(IllegalArgumentException.class,
+                () -> routes.add(HttpMethod.GET, "/x/{id:uuid}", exchange -> { }, List.of()));
+    }
+
+    private Filter recording(String name) {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                calls.add(name);
+                chain.doFilter(exchange);
+            }
+
+            @Override
+            public String description() {
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,194 @@
+package otpservice.dao.impl;
+
+import org.junit.jupiter.api.Test;
+import otpservice.dao.UserDao;
+import otpservice.model.User;
+import otpservice.model.UserRole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingUserDaoTest {
+
+    /** DAO в памяти: считает обращения и может задерживать загрузку до сигнала */
+    private static final class FakeUserDao implements UserDao {
+        final Map<Long, User> users = new ConcurrentHashMap<>();
+        final AtomicInteger loads = new AtomicInteger();
+        volatile CountDownLatch gate;
+        volatile RuntimeException failure;
+
+        @Override
+        public void create(User user) {
+            users.put(user.getId(), user);
+        }
+
+        @Override
+        public void save(User user) {
+            users.put(user.getId(), user);
+        }
+
+        @Override
+        public User findByUsername(String username) {
+            loads.incrementAndGet();
+            return users.values().stream().filter(u -> u.getUsername().equals(username)).findFirst().orElse(null);
+        }
+
+        @Override
+        public User findById(Long id) {
+            loads.incrementAndGet();
+            // строка читается до ожидания — как запрос, завершившийся до чужой записи
+            User row = users.get(id);
+            CountDownLatch latch = gate;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return row;
+        }
+
+        @Override
+        public List<User> findAllUsersWithoutAdmins() {
+            return List.copyOf(users.values());
+        }
+
+        @Override
+        public boolean adminExists() {
+            return false;
+        }
+
+        @Override
+        public void delete(Long userId) {
+            users.remove(userId);
+        }
+    }
+
+    private static User user(long id, String email) {
+        return new User(id, "user" + id, "hash", email, UserRole.USER);
+    }
+
+    @Test
+    void concurrentMissesAreCoalesced() throws Exception {
+        FakeUserDao db = new FakeUserDao();
+        db.users.put(1L, user(1, "a@example.com"));
+        db.gate = new CountDownLatch(1);
+        CachingUserDao cache = new CachingUserDao(db, 60, 100);
+
+        ExecutorService pool = Executors.newFixedThreadPool(20);
+        try {
+            List<Future<User>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                results.add(pool.submit(() -> cache.findById(1L)));
+            }
+            Thread.sleep(100);
+            db.gate.countDown();
+            for (Future<User> result : results) {
+                assertEquals("a@example.com", result.get(5, TimeUnit.SECONDS).getEmail());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, db.loads.get());
+        assertEquals("a@example.com", cache.findById(1L).getEmail());
+        assertEquals(1, db.loads.get());
+    }
+
+    @Test
+    void callersGetCopies() {
+        FakeUserDao db = new FakeUserDao();
+        db.users.put(1L, user(1, "a@example.com"));
+        CachingUserDao cache = new CachingUserDao(db, 60, 100);
+
+        User first = cache.findById(1L);
+        first.setEmail("changed@example.com");
+        User second = cache.findById(1L);
+        assertNotSame(first, second);
+        assertEquals("a@example.com", second.getEmail());
+    }
+
+    @Test
+    void saveInvalidatesBothIndexes() {
+        FakeUserDao db = new FakeUserDao();
+        db.users.put(1L, user(1, "a@example.com"));
+        CachingUserDao cache = new CachingUserDao(db, 60, 100);
+        cache.findById(1L);
+        cache.findByUsername("user1");
+
+        cache.save(user(1, "b@example.com"));
+        assertEquals("b@example.com", cache.findById(1L).getEmail());
+        assertEquals("b@example.com", cache.findByUsername("user1").getEmail());
+        assertEquals(4, db.loads.get());
+    }
+
+    @Test
+    void loadOverlappingWriteIsNotCached() throws Exception {
+        FakeUserDao db = new FakeUserDao();
+        db.users.put(1L, user(1, "old@example.com"));
+        db.gate = new CountDownLatch(1);
+        CachingUserDao cache = new CachingUserDao(db, 60, 100);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<User> stale = pool.submit(() -> cache.findById(1L));
+            Thread.sleep(100);
+            // запись в БД, пока загрузка ещё не завершилась
+            db.users.put(1L, user(1, "new@example.com"));
+            cache.invalidate(1L);
+            db.gate.countDown();
+            assertEquals("old@example.com", stale.get(5, TimeUnit.SECONDS).getEmail());
+        } finally {
+            pool.shutdownNow();
+        }
+        db.gate = null;
+        assertEquals("new@example.com", cache.findById(1L).getEmail());
+    }
+
+    @Test
+    void missingUsersAndFailuresAreNotCached() {
+        FakeUserDao db = new FakeUserDao();
+        CachingUserDao cache = new CachingUserDao(db, 60, 100);
+        assertNull(cache.findById(1L));
+        assertNull(cache.findById(1L));
+        assertEquals(2, db.loads.get());
+
+        db.users.put(2L, user(2, "b@example.com"));
+        db.failure = new IllegalStateException("db down");
+        assertThrows(IllegalStateException.class, () -> cache.findById(2L));
+        db.failure = null;
+        assertEquals("b@example.com", cache.findById(2L).getEmail());
+    }
+
+    @Test
+    void sizeStaysWithinLimit() {
+        FakeUserDao db = new FakeUserDao();
+        for (long id = 1; id <= 500; id++) {
+            db.users.put(id, user(id, id + "@example.com"));
+        }
+        CachingUserDao cache = new CachingUserDao(db, 60, 100);
+        for (long id = 1; id <= 500; id++) {
+            cache.findById(id);
+        }
+        int cached = (Integer) cache.stats().get("byId");
+        assertTrue(cached <= 100, "cached " + cached);
+        assertTrue((Long) cache.stats().get("evictions") > 0);
+    }
+}
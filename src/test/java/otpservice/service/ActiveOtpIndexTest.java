@@ -0,0 +1,132 @@
+package otpservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ActiveOtpIndexTest {
+    private static final long NOW = 1_000_000;
+
+    private static int capacity(ActiveOtpIndex index) {
+        return (Integer) index.stats().get("capacity");
+    }
+
+    @Test
+    void encodeKeepsLeadingZerosAndRejectsNonDigits() {
+        assertNotEquals(ActiveOtpIndex.encode("0123"), ActiveOtpIndex.encode("123"));
+        assertNotEquals(ActiveOtpIndex.encode("0"), ActiveOtpIndex.encode("00"));
+        assertEquals(ActiveOtpIndex.NOT_INDEXED, ActiveOtpIndex.encode(""));
+        assertEquals(ActiveOtpIndex.NOT_INDEXED, ActiveOtpIndex.encode(null));
+        assertEquals(ActiveOtpIndex.NOT_INDEXED, ActiveOtpIndex.encode("12a4"));
+        assertEquals(ActiveOtpIndex.NOT_INDEXED, ActiveOtpIndex.encode("123456789012345678"));
+        assertTrue(ActiveOtpIndex.encode("99999999999999999") > 0);
+    }
+
+    @Test
+    void findKeepsEntryUntilRemoved() {
+        ActiveOtpIndex index = new ActiveOtpIndex(16, true);
+        assertTrue(index.add(10, 1, "0042", NOW));
+        assertEquals(0L, index.find(1, "42", 0));
+        assertEquals(0L, index.find(2, "0042", 0));
+        // повторный поиск (например, после ошибки БД) снова находит код
+        assertEquals(10L, index.find(1, "0042", 0));
+        assertEquals(10L, index.find(1, "0042", 0));
+        assertTrue(index.remove(1, "0042"));
+        assertFalse(index.remove(1, "0042"));
+        assertEquals(0L, index.find(1, "0042", 0));
+        assertEquals(0, index.size());
+        assertEquals(ActiveOtpIndex.NOT_INDEXED, index.find(1, "abc", 0));
+    }
+
+    @Test
+    void expiredEntryIsDroppedOnFind() {
+        ActiveOtpIndex index = new ActiveOtpIndex(16, true);
+        index.add(10, 1, "111111", NOW);
+        assertEquals(0L, index.find(1, "111111", NOW));
+        assertEquals(0, index.size());
+        assertEquals(1L, index.stats().get("expired"));
+    }
+
+    @Test
+    void probingPassesOverTombstonesAndChurnDoesNotGrowTable() {
+        ActiveOtpIndex index = new ActiveOtpIndex(16, true);
+        for (int i = 0; i < 8; i++) {
+            index.add(100 + i, 1, String.format("%06d", i), NOW);
+        }
+        int initialCapacity = capacity(index);
+        for (int round = 0; round < 10_000; round++) {
+            String code = String.format("%06d", 1000 + round);
+            assertTrue(index.add(round + 1000, 2, code, NOW));
+            assertEquals(round + 1000L, index.find(2, code, 0));
+            assertTrue(index.remove(2, code));
+            // записи, добавленные до надгробий, по-прежнему находятся
+            assertEquals(100L + round % 8, index.find(1, String.format("%06d", round % 8), 0));
+        }
+        assertEquals(8, index.size());
+        assertEquals(initialCapacity, capacity(index));
+    }
+
+    @Test
+    void growsAndShrinksWithRehash() {
+        ActiveOtpIndex index = new ActiveOtpIndex(16, true);
+        for (int i = 1; i <= 10_000; i++) {
+            assertTrue(index.add(i, i % 97, Integer.toString(i), i < 9_000 ? NOW - 1 : NOW + 1));
+        }
+        assertEquals(10_000, index.size());
+        assertTrue(capacity(index) >= 20_000);
+        for (int i = 1; i <= 10_000; i++) {
+            assertEquals((long) i, index.find(i % 97, Integer.toString(i), NOW - 10));
+        }
+        assertEquals(8_999, index.purgeExpired(NOW));
+        assertEquals(1_001, index.size());
+        assertTrue(capacity(index) <= 8192, "table should shrink: " + capacity(index));
+        for (int i = 9_000; i <= 10_000; i++) {
+            assertEquals((long) i, index.find(i % 97, Integer.toString(i), NOW));
+        }
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(3);
+        ActiveOtpIndex index = new ActiveOtpIndex(16, true);
+        Map<String, Long> model = new HashMap<>();
+        long nextId = 1;
+        for (int op = 0; op < 50_000; op++) {
+            long userId = random.nextInt(50);
+            String code = String.format("%04d", random.nextInt(200));
+            String key = userId + ":" + code;
+            if (random.nextBoolean()) {
+                if (!model.containsKey(key)) {
+                    index.add(nextId, userId, code, NOW);
+                    model.put(key, nextId++);
+                }
+            } else {
+                assertEquals(model.containsKey(key), index.remove(userId, code));
+                model.remove(key);
+            }
+            assertEquals(model.size(), index.size());
+            if (op % 1000 == 0) {
+                for (Map.Entry<String, Long> e : model.entrySet()) {
+                    String[] parts = e.getKey().split(":");
+                    assertEquals(e.getValue().longValue(), index.find(Long.parseLong(parts[0]), parts[1], 0));
+                }
+            }
+        }
+    }
+
+    @Test
+    void fromPropertiesDefaultsToAuthoritative() {
+        assertTrue(ActiveOtpIndex.fromProperties(new Properties()).isAuthoritative());
+        Properties config = new Properties();
+        config.setProperty("otp.index.authoritative", "false");
+        assertFalse(ActiveOtpIndex.fromProperties(config).isAuthoritative());
+    }
+}
@@ -0,0 +1,155 @@
+package otpservice.service;
+
+import org.junit.jupiter.api.Test;
+import otpservice.dao.OperationDao;
+import otpservice.model.Operation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OperationCatalogCacheTest {
+
+    /** Каталог в памяти: отпечаток — номер версии; может имитировать недоступность БД */
+    private static final class FakeOperationDao implements OperationDao {
+        final List<Operation> operations = new ArrayList<>();
+        final AtomicInteger fingerprints = new AtomicInteger();
+        int version;
+        /** Отказ всех запросов */
+        volatile RuntimeException failure;
+        /** Отказ только чтения списка операций */
+        volatile RuntimeException loadFailure;
+
+        @Override
+        public List<Operation> getAllOperations() {
+            failIfDown();
+            RuntimeException e = loadFailure;
+            if (e != null) {
+                throw e;
+            }
+            return new ArrayList<>(operations);
+        }
+
+        @Override
+        public Operation findByNumber(int operationNumber) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Operation create(Operation operation) {
+            operations.add(operation);
+            version++;
+            return operation;
+        }
+
+        @Override
+        public boolean update(Operation operation) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String fingerprint() {
+            fingerprints.incrementAndGet();
+            failIfDown();
+            return "v" + version;
+        }
+
+        private void failIfDown() {
+            RuntimeException e = failure;
+            if (e != null) {
+                throw e;
+            }
+        }
+    }
+
+    @Test
+    void revalidationPicksUpChanges() {
+        FakeOperationDao dao = new FakeOperationDao();
+        dao.create(new Operation(1L, 101, "UpdatePassword", null));
+        OperationCatalogCache cache = new OperationCatalogCache(dao, Duration.ZERO);
+        OperationCatalogCache.Snapshot first = cache.get();
+        assertEquals("UpdatePassword", cache.find(101).getName());
+        assertNull(cache.find(102));
+
+        dao.create(new Operation(2L, 102, "SendReport", null));
+        OperationCatalogCache.Snapshot second = cache.get();
+        assertNotEquals(first.getEtag(), second.getEtag());
+        assertEquals("SendReport", cache.find(102).getName());
+    }
+
+    @Test
+    void databaseOutageServesCurrentSnapshot() {
+        FakeOperationDao dao = new FakeOperationDao();
+        dao.create(new Operation(1L, 101, "UpdatePassword", null));
+        OperationCatalogCache cache = new OperationCatalogCache(dao, Duration.ofMinutes(1));
+        OperationCatalogCache zeroInterval = new OperationCatalogCache(dao, Duration.ZERO);
+        OperationCatalogCache.Snapshot cached = cache.get();
+        zeroInterval.get();
+
+        dao.failure = new RuntimeException("connection refused");
+        // перепроверка при каждом обращении: ошибка не выходит наружу, снимок прежний
+        for (int i = 0; i < 3; i++) {
+            assertEquals("UpdatePassword", zeroInterval.find(101).getName());
+        }
+        // интервал ещё не истёк — в БД не обращаемся
+        int before = dao.fingerprints.get();
+        assertEquals(cached.getEtag(), cache.get().getEtag());
+        assertEquals(before, dao.fingerprints.get());
+
+        dao.failure = null;
+        dao.create(new Operation(2L, 102, "SendReport", null));
+        assertEquals("SendReport", zeroInterval.find(102).getName());
+    }
+
+    @Test
+    void failedRevalidationIsDeferredByInterval() throws InterruptedException {
+        FakeOperationDao dao = new FakeOperationDao();
+        dao.create(new Operation(1L, 101, "UpdatePassword", null));
+        OperationCatalogCache cache = new OperationCatalogCache(dao, Duration.ofMillis(200));
+        cache.get();
+
+        Thread.sleep(250);
+        dao.failure = new RuntimeException("connection refused");
+        cache.get();
+        int afterFailure = dao.fingerprints.get();
+        // сбой продлил checkedAt: следующие запросы в пределах интервала БД не трогают
+        for (int i = 0; i < 100; i++) {
+            assertEquals("UpdatePassword", cache.find(101).getName());
+        }
+        assertEquals(afterFailure, dao.fingerprints.get());
+    }
+
+    @Test
+    void failedRebuildKeepsOldSnapshot() {
+        FakeOperationDao dao = new FakeOperationDao();
+        dao.create(new Operation(1L, 101, "UpdatePassword", null));
+        OperationCatalogCache cache = new OperationCatalogCache(dao, Duration.ZERO);
+        String etag = cache.get().getEtag();
+
+        // отпечаток изменился, но список операций прочитать не удалось
+        dao.create(new Operation(2L, 102, "SendReport", null));
+        dao.loadFailure = new RuntimeException("read timeout");
+        assertEquals(etag, cache.get().getEtag());
+        assertNull(cache.find(102));
+
+        dao.loadFailure = null;
+        assertEquals("SendReport", cache.find(102).getName());
+    }
+
+    @Test
+    void firstLoadFailurePropagates() {
+        FakeOperationDao dao = new FakeOperationDao();
+        dao.failure = new RuntimeException("connection refused");
+        OperationCatalogCache cache = new OperationCatalogCache(dao, Duration.ZERO);
+        // без снимка отдать нечего
+        assertThrows(RuntimeException.class, cache::get);
+        dao.failure = null;
+        assertEquals(0, cache.get().getOperations().size());
+    }
+}
@@ -0,0 +1,76 @@
+package otpservice.util;
+
+import org.junit.jupiter.api.Test;
+import otpservice.model.User;
+import otpservice.model.UserRole;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiringTokenStoreTest {
+
+    private static User user(long id) {
+        return new User(id, "user" + id, "hash", "user" + id + "@example.com", UserRole.USER);
+    }
+
+    private static long bucketEntries(ExpiringTokenStore store) {
+        return ((Number) store.stats().get("bucketEntries")).longValue();
+    }
+
+    @Test
+    void removedSessionsDoNotStayInBuckets() {
+        ExpiringTokenStore store = new ExpiringTokenStore(60_000, 10, 100_000);
+        for (int i = 0; i < 10_000; i++) {
+            store.put("t" + i, user(i), 3_600_000);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(store.remove("t" + i));
+        }
+        assertEquals(0, store.size());
+        assertTrue(bucketEntries(store) < 100, "dead entries must be compacted: " + store.stats());
+    }
+
+    @Test
+    void removeUserAndPerUserEvictionReleaseBucketEntries() {
+        ExpiringTokenStore store = new ExpiringTokenStore(60_000, 1, 100_000);
+        for (int i = 0; i < 10_000; i++) {
+            store.put("t" + i, user(1), 3_600_000);
+        }
+        assertEquals(1, store.size());
+        assertEquals(1, store.removeUser(1));
+        assertTrue(bucketEntries(store) < 100, "dead entries must be compacted: " + store.stats());
+    }
+
+    @Test
+    void capacityEvictionSkipsSlidSessions() {
+        ExpiringTokenStore store = new ExpiringTokenStore(1_000, 10, 2);
+        store.put("a", user(1), 1_500);
+        store.put("b", user(2), 2_500);
+        // сессия a продлена и теперь истекает позже всех
+        assertNotNull(store.touch("a", 1_400, 5_000));
+        store.put("c", user(3), 2_600);
+
+        assertEquals(2, store.size());
+        assertNotNull(store.get("a", 1_400));
+        assertNull(store.get("b", 1_400));
+        assertNotNull(store.get("c", 1_400));
+    }
+
+    @Test
+    void purgeKeepsSlidSessionsAndDropsExpired() {
+        ExpiringTokenStore store = new ExpiringTokenStore(1_000, 10, 100);
+        store.put("a", user(1), 1_500);
+        store.put("b", user(2), 1_600);
+        assertNotNull(store.touch("a", 1_200, 5_000));
+
+        assertEquals(1, store.purgeExpired(3_000));
+        assertNotNull(store.get("a", 3_000));
+        assertNull(store.get("b", 1_000));
+
+        assertEquals(1, store.purgeExpired(7_000));
+        assertEquals(0, store.size());
+        assertEquals(0L, bucketEntries(store));
+    }
+}
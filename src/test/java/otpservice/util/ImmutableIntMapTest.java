@@ -0,0 +1,90 @@
+package otpservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImmutableIntMapTest {
+
+    /** Значение с ключом; поле name различает значения с одинаковым ключом */
+    private record Item(int key, String name) {
+    }
+
+    @Test
+    void emptyMap() {
+        ImmutableIntMap<Item> map = ImmutableIntMap.of(List.of(), Item::key);
+        assertEquals(0, map.size());
+        assertNull(map.get(0));
+        assertFalse(map.containsKey(42));
+    }
+
+    @Test
+    void edgeKeys() {
+        List<Item> items = List.of(new Item(0, "zero"), new Item(-1, "minus"),
+                new Item(Integer.MIN_VALUE, "min"), new Item(Integer.MAX_VALUE, "max"));
+        ImmutableIntMap<Item> map = ImmutableIntMap.of(items, Item::key);
+        assertEquals(4, map.size());
+        for (Item item : items) {
+            assertSame(item, map.get(item.key()));
+        }
+        assertNull(map.get(1));
+    }
+
+    @Test
+    void duplicateKeyKeepsLastValue() {
+        Item first = new Item(7, "first");
+        Item last = new Item(7, "last");
+        ImmutableIntMap<Item> map = ImmutableIntMap.of(List.of(first, new Item(8, "other"), last), Item::key);
+        assertEquals(2, map.size());
+        assertSame(last, map.get(7));
+    }
+
+    @Test
+    void matchesHashMapOnSequentialAndRandomKeys() {
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            int count = random.nextInt(2000);
+            boolean sequential = round % 2 == 0;
+            List<Item> items = new ArrayList<>();
+            Map<Integer, Item> expected = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                // последовательные номера — как номера операций; случайные дают коллизии слотов
+                int key = sequential ? 100 + i : random.nextInt(4096) - 2048;
+                Item item = new Item(key, "v" + i);
+                items.add(item);
+                expected.put(key, item);
+            }
+            ImmutableIntMap<Item> map = ImmutableIntMap.of(items, Item::key);
+            assertEquals(expected.size(), map.size());
+            for (int key = -3000; key < 3000; key++) {
+                assertSame(expected.get(key), map.get(key));
+                assertEquals(expected.containsKey(key), map.containsKey(key));
+            }
+        }
+    }
+
+    @Test
+    void missingKeyLookupTerminatesForAnySize() {
+        // при заполнении не больше половины поиск отсутствующего ключа всегда находит пустой слот
+        for (int count = 0; count < 300; count++) {
+            List<Item> items = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                items.add(new Item(i * 64, "v" + i));
+            }
+            ImmutableIntMap<Item> map = ImmutableIntMap.of(items, Item::key);
+            assertEquals(count, map.size());
+            assertNull(map.get(-1));
+            assertTrue(count == 0 || map.containsKey((count - 1) * 64));
+        }
+    }
+}
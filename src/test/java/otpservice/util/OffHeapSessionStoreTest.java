@@ -0,0 +1,111 @@
+package otpservice.util;
+
+import org.junit.jupiter.api.Test;
+import otpservice.model.User;
+import otpservice.model.UserRole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapSessionStoreTest {
+    private static final long EXPIRES = 4_000_000_000_000L;
+
+    private static User user(long id) {
+        return new User(id, "user" + id, null, null, UserRole.USER);
+    }
+
+    /**
+     * Маленькая таблица даёт длинные цепочки пробирования с переходом через конец массива;
+     * после каждого удаления обратным сдвигом все оставшиеся ключи должны находиться.
+     */
+    @Test
+    void backwardShiftDeleteKeepsProbeChainsReachable() {
+        Random random = new Random(42);
+        OffHeapSessionStore store = new OffHeapSessionStore(64);
+        try {
+            Map<String, Long> model = new HashMap<>();
+            List<String> keys = new ArrayList<>();
+            for (int op = 0; op < 20_000; op++) {
+                if (model.size() < 40 && (keys.isEmpty() || random.nextInt(3) > 0)) {
+                    String token = new UUID(random.nextLong(), random.nextLong()).toString();
+                    long userId = op + 1;
+                    store.put(token, user(userId), EXPIRES);
+                    model.put(token, userId);
+                    keys.add(token);
+                } else {
+                    String token = keys.remove(random.nextInt(keys.size()));
+                    assertTrue(store.remove(token));
+                    model.remove(token);
+                    assertNull(store.get(token, 0));
+                    assertFalse(store.remove(token));
+                }
+                assertEquals(model.size(), store.size());
+                for (Map.Entry<String, Long> e : model.entrySet()) {
+                    User found = store.get(e.getKey(), 0);
+                    assertNotNull(found, "lost " + e.getKey() + " after op " + op);
+                    assertEquals(e.getValue(), found.getId());
+                }
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void removeUserAndPurgeShiftChains() {
+        OffHeapSessionStore store = new OffHeapSessionStore(16);
+        try {
+            List<String> tokens = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                String token = UUID.randomUUID().toString();
+                tokens.add(token);
+                // чётные сессии пользователя 1 истекают раньше
+                store.put(token, user(i % 3 == 0 ? 7 : 1), i % 2 == 0 ? 10_000 : EXPIRES);
+            }
+            assertEquals(4, store.removeUser(7));
+            assertEquals(4, store.purgeExpired(20_000));
+            for (int i = 0; i < 12; i++) {
+                boolean alive = i % 3 != 0 && i % 2 != 0;
+                assertEquals(alive, store.get(tokens.get(i), 20_000) != null, "token " + i);
+            }
+            assertEquals(4, store.size());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void lookupParsesTokenInPlace() {
+        OffHeapSessionStore store = new OffHeapSessionStore(16);
+        try {
+            String token = UUID.randomUUID().toString();
+            store.put(token, new User(5L, "admin", null, null, UserRole.ADMIN), EXPIRES);
+
+            User found = store.lookup("Bearer " + token, 7, 0, 0);
+            assertNotNull(found);
+            assertEquals(5L, found.getId());
+            assertEquals(UserRole.ADMIN, found.getRole());
+            assertNull(store.lookup("Bearer " + token.toUpperCase().replace('-', '_'), 7, 0, 0));
+            assertNull(store.get(token, EXPIRES));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void closeIsIdempotent() {
+        OffHeapSessionStore store = new OffHeapSessionStore(16);
+        store.close();
+        store.close();
+    }
+}
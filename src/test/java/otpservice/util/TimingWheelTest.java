@@ -0,0 +1,98 @@
+package otpservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    private static final long START = 1_700_000_000L;
+
+    @Test
+    void firesExactlyAtDeadlineAcrossAllLevels() {
+        TimingWheel wheel = new TimingWheel(START);
+        // границы уровней: 64 с, 64^2, 64^3 и срок за пределами колеса (64^4)
+        long[] delays = {1, 2, 63, 64, 65, 127, 128, 4095, 4096, 4097, 262_143, 262_144, 262_145, 300_000};
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < delays.length; i++) {
+            long id = i + 1;
+            wheel.schedule(id, START + delays[i]);
+            deadlines.put(id, START + delays[i]);
+        }
+        assertEquals(delays.length, wheel.size());
+
+        Map<Long, Long> firedAt = new HashMap<>();
+        for (long now = START + 1; now <= START + 300_000; now++) {
+            long second = now;
+            wheel.advance(now, id -> firedAt.put(id, second));
+        }
+        assertEquals(deadlines, firedAt);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlineBeyondWheelRangeIsCascadedAgain() {
+        TimingWheel wheel = new TimingWheel(START);
+        long range = 1L << 24;
+        long deadline = START + range + 12_345;
+        wheel.schedule(7, deadline);
+
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(deadline - 1, fired::add);
+        assertTrue(fired.isEmpty(), "fired early");
+        wheel.advance(deadline, fired::add);
+        assertEquals(List.of(7L), fired);
+    }
+
+    @Test
+    void overdueAndJumpsFireOnNextAdvance() {
+        TimingWheel wheel = new TimingWheel(START);
+        wheel.schedule(1, START - 100);
+        wheel.schedule(2, START);
+        wheel.schedule(3, START + 10);
+        wheel.schedule(4, START + 5000);
+
+        List<Long> fired = new ArrayList<>();
+        assertEquals(2, wheel.advance(START, fired::add));
+        assertEquals(List.of(1L, 2L), fired);
+
+        // простой потока: продвижение сразу на час отдаёт всё, что наступило
+        fired.clear();
+        assertEquals(2, wheel.advance(START + 3600 * 2, fired::add));
+        assertEquals(List.of(3L, 4L), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedulingDuringRunNeverFiresEarlyOrLate() {
+        Random random = new Random(11);
+        TimingWheel wheel = new TimingWheel(START);
+        Map<Long, Long> pending = new HashMap<>();
+        long nextId = 1;
+        long now = START;
+        for (int step = 0; step < 20_000; step++) {
+            for (int i = random.nextInt(5); i > 0; i--) {
+                long delay = random.nextInt(10) == 0 ? random.nextInt(200_000) : random.nextInt(600);
+                wheel.schedule(nextId, now + delay);
+                pending.put(nextId++, now + delay);
+            }
+            now += 1 + (random.nextInt(20) == 0 ? random.nextInt(100) : 0);
+            long current = now;
+            wheel.advance(now, id -> {
+                Long deadline = pending.remove(id);
+                assertTrue(deadline != null, "fired twice: " + id);
+                assertTrue(deadline <= current, "fired early: " + id);
+            });
+            for (long deadline : pending.values()) {
+                assertTrue(deadline > now, "missed deadline " + deadline + " at " + now);
+            }
+        }
+        assertEquals(pending.size(), wheel.size());
+    }
+}
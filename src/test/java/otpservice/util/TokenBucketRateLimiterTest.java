@@ -0,0 +1,156 @@
+package otpservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void burstThenOneTokenPerEmissionInterval() {
+        TokenBucketRateLimiter<String> limiter = new TokenBucketRateLimiter<>("test", 5, 10, 1000);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0L, limiter.tryAcquire("a", t0));
+        }
+        // ведро пусто: следующий токен через 10 с / 5 = 2 с
+        assertEquals(2 * SECOND, limiter.tryAcquire("a", t0));
+        assertEquals(SECOND, limiter.tryAcquire("a", t0 + SECOND));
+        assertEquals(0L, limiter.tryAcquire("a", t0 + 2 * SECOND));
+        assertTrue(limiter.tryAcquire("a", t0 + 2 * SECOND) > 0);
+
+        // простой дольше периода не копит токенов сверх ёмкости
+        long later = t0 + 100 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0L, limiter.tryAcquire("a", later));
+        }
+        assertTrue(limiter.tryAcquire("a", later) > 0);
+        assertEquals(11L, limiter.getAllowedCount());
+        assertEquals(4L, limiter.getRejectedCount());
+    }
+
+    @Test
+    void keysHaveIndependentBuckets() {
+        TokenBucketRateLimiter<Long> limiter = new TokenBucketRateLimiter<>("test", 1, 60, 1000);
+        long now = System.nanoTime();
+        assertEquals(0L, limiter.tryAcquire(1L, now));
+        assertTrue(limiter.tryAcquire(1L, now) > 0);
+        assertEquals(0L, limiter.tryAcquire(2L, now));
+        assertEquals(2, limiter.getKeyCount());
+    }
+
+    @Test
+    void sweepDropsFullBuckets() {
+        TokenBucketRateLimiter<Integer> limiter = new TokenBucketRateLimiter<>("test", 2, 1, 1000);
+        long now = System.nanoTime();
+        for (int key = 0; key < 100; key++) {
+            limiter.tryAcquire(key, now);
+        }
+        assertEquals(100, limiter.getKeyCount());
+        // интервал очистки — не меньше 10 с; к этому моменту все вёдра снова полные
+        limiter.tryAcquire(-1, now + 11 * SECOND);
+        assertEquals(1, limiter.getKeyCount());
+    }
+
+    @Test
+    void keysBeyondMaxKeysShareOverflowBucket() {
+        TokenBucketRateLimiter<Integer> limiter = new TokenBucketRateLimiter<>("test", 3, 60, 10);
+        long now = System.nanoTime();
+        for (int key = 0; key < 10; key++) {
+            assertEquals(0L, limiter.tryAcquire(key, now));
+        }
+        // новые ключи сверх предела таблицу не растят и делят одно ведро на 3 запроса
+        int granted = 0;
+        for (int key = 10; key < 10_000; key++) {
+            if (limiter.tryAcquire(key, now) == 0) {
+                granted++;
+            }
+        }
+        assertEquals(3, granted);
+        assertEquals(10, limiter.getKeyCount());
+        assertEquals(9990L, limiter.getOverflowCount());
+        // известные ключи сохраняют собственные вёдра
+        assertEquals(0L, limiter.tryAcquire(0, now));
+    }
+
+    @Test
+    void sweepIsBatchedAndRunsOncePerInterval() {
+        TokenBucketRateLimiter<Integer> limiter = new TokenBucketRateLimiter<>("test", 1, 1, 5000);
+        long now = System.nanoTime();
+        for (int key = 0; key < 5000; key++) {
+            limiter.tryAcquire(key, now);
+        }
+        assertEquals(5000, limiter.getKeyCount());
+        // до интервала очистки таблица заполнена до предела, но не просматривается
+        limiter.tryAcquire(-1, now + SECOND);
+        assertEquals(5000, limiter.getKeyCount());
+        assertEquals(1L, limiter.getOverflowCount());
+
+        // обход идёт порциями по 1024 записи за вызов
+        long later = now + 11 * SECOND;
+        limiter.tryAcquire(0, later);
+        assertEquals(5000 - 1024 + 1, limiter.getKeyCount());
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire(0, later);
+        }
+        assertEquals(1, limiter.getKeyCount());
+        // следующий обход — не раньше, чем через интервал
+        for (int key = 1; key < 100; key++) {
+            limiter.tryAcquire(key, later + 2 * SECOND);
+        }
+        assertEquals(100, limiter.getKeyCount());
+        limiter.tryAcquire(0, later + 22 * SECOND);
+        assertEquals(1, limiter.getKeyCount());
+    }
+
+    @Test
+    void concurrentCallersNeverExceedCapacity() throws InterruptedException {
+        TokenBucketRateLimiter<String> limiter = new TokenBucketRateLimiter<>("test", 100, 3600, 1000);
+        long now = System.nanoTime();
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    if (limiter.tryAcquire("shared", now) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100, granted.get());
+        assertEquals(100L, limiter.getAllowedCount());
+        assertEquals(7900L, limiter.getRejectedCount());
+    }
+
+    @Test
+    void parseSpec() {
+        TokenBucketRateLimiter<String> limiter = TokenBucketRateLimiter.parse("login", " 10 / 60 ", 1000);
+        assertEquals(10, limiter.getCapacity());
+        assertEquals(60L, limiter.getPeriodSeconds());
+        assertNull(TokenBucketRateLimiter.parse("login", "", 1000));
+        assertNull(TokenBucketRateLimiter.parse("login", "0", 1000));
+        assertThrows(IllegalArgumentException.class, () -> TokenBucketRateLimiter.parse("login", "10", 1000));
+        assertThrows(IllegalArgumentException.class, () -> TokenBucketRateLimiter.parse("login", "x/60", 1000));
+        assertThrows(IllegalArgumentException.class, () -> TokenBucketRateLimiter.parse("login", "0/60", 1000));
+    }
+}